@@ -0,0 +1,65 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an uploaded export into a {@link PunchDataset}: parsing plus the columnar sort. The CSV
+ * copy holds the same punches as the workbook and is read both on one thread and in parallel chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    @Param({"10", "40"})
+    public int sites;
+
+    @Param({"50"})
+    public int employeesPerSite;
+
+    @Param({"2", "4"})
+    public int punchesPerDay;
+
+    @Param({"0.1"})
+    public double duplicateRate;
+
+    private Path workbook, csv;
+    private ExecutorService pool;
+
+    @Setup(Level.Trial)
+    public void writeWorkbook() throws Exception {
+        workbook = SyntheticPunchWorkbook.write(sites, employeesPerSite, punchesPerDay, duplicateRate);
+        csv = SyntheticPunchWorkbook.writeCsv(workbook);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public PunchDataset readPunchesFromStream() throws Exception {
+        return SyntheticPunchWorkbook.read(workbook);
+    }
+
+    @Benchmark
+    public PunchDataset readCsv() throws Exception {
+        return SyntheticPunchWorkbook.readCsv(csv, null, 0);
+    }
+
+    @Benchmark
+    public PunchDataset readCsvChunked() throws Exception {
+        return SyntheticPunchWorkbook.readCsv(csv, pool, CHUNK_BYTES);
+    }
+}
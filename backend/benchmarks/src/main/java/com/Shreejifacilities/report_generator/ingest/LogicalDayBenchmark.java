@@ -0,0 +1,81 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logical-day bucketing of a million punches: the original per-punch Calendar, SimpleDateFormat and
+ * String.split path kept as a baseline against the epoch-minute arithmetic the services use now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogicalDayBenchmark {
+
+    private static final int PUNCHES = 1_000_000;
+    private static final Set<String> NIGHT_SHIFT_IDS = new HashSet<>(Arrays.asList("88023", "87140"));
+
+    private String[] sites, empKeys;
+    private Date[] dates;
+    private long[] minutes;
+    private int[] cutoffs;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(7);
+        sites = new String[PUNCHES];
+        empKeys = new String[PUNCHES];
+        dates = new Date[PUNCHES];
+        minutes = new long[PUNCHES];
+        cutoffs = new int[PUNCHES];
+        long base = LocalDate.of(2024, 1, 1).toEpochDay() * LogicalDay.MINUTES_PER_DAY;
+        for (int i = 0; i < PUNCHES; i++) {
+            sites[i] = random.nextInt(10) == 0 ? "Karol Bagh" : "Site " + random.nextInt(40);
+            empKeys[i] = (random.nextInt(50) == 0 ? "88023" : String.valueOf(10000 + random.nextInt(5000))) + "::Name";
+            minutes[i] = base + random.nextInt(33 * LogicalDay.MINUTES_PER_DAY);
+            dates[i] = new Date(minutes[i] * 60_000L);
+            // The services resolve the cutoff once per employee run, outside the per-punch loop.
+            cutoffs[i] = "Karol Bagh".equals(sites[i]) && empKeys[i].startsWith("88023") ? 16 : 4;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUNCHES)
+    public int calendarBucketing() {
+        int inMonth = 0;
+        for (int i = 0; i < PUNCHES; i++) {
+            Calendar shiftDateCal = Calendar.getInstance();
+            shiftDateCal.setTime(dates[i]);
+            String empId = empKeys[i].split("::")[0];
+            int cutoff = "Karol Bagh".equalsIgnoreCase(sites[i]) && NIGHT_SHIFT_IDS.contains(empId) ? 16 : 4;
+            if (shiftDateCal.get(Calendar.HOUR_OF_DAY) < cutoff) shiftDateCal.add(Calendar.DATE, -1);
+            if (shiftDateCal.get(Calendar.MONTH) != Calendar.JANUARY || shiftDateCal.get(Calendar.YEAR) != 2024) continue;
+            if (!new SimpleDateFormat("yyyy-MM-dd").format(shiftDateCal.getTime()).isEmpty()) inMonth++;
+        }
+        return inMonth;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUNCHES)
+    public int epochMinuteBucketing() {
+        long monthStart = LocalDate.of(2024, 1, 1).toEpochDay();
+        int inMonth = 0;
+        for (int i = 0; i < PUNCHES; i++) {
+            long day = LogicalDay.epochDay(minutes[i], cutoffs[i]) - monthStart;
+            if (day >= 0 && day < 31) inMonth++;
+        }
+        return inMonth;
+    }
+}
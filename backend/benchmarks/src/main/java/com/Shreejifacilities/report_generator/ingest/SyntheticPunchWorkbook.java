@@ -0,0 +1,108 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Writes a device export shaped like the real ones: one row per punch with DeviceName, IDNo, Name,
+ * PunchTime and Department columns, covering the report month plus a day either side so the night-shift
+ * and month-boundary paths are exercised. The first site is Karol Bagh and carries the night-shift IDs.
+ */
+public final class SyntheticPunchWorkbook {
+
+    public static final int YEAR = 2024, MONTH = 1;
+
+    private SyntheticPunchWorkbook() {
+    }
+
+    public static Path write(int sites, int employeesPerSite, int punchesPerDay, double duplicateRate) throws Exception {
+        Path file = Files.createTempFile("synthetic-punches-", ".xlsx");
+        file.toFile().deleteOnExit();
+        Random random = new Random(42);
+        YearMonth month = YearMonth.of(YEAR, MONTH);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+        try (workbook; OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Punches");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("m/d/yy h:mm"));
+            Row header = sheet.createRow(0);
+            String[] columns = {"DeviceName", "IDNo", "Name", "PunchTime", "Department"};
+            for (int i = 0; i < columns.length; i++) header.createCell(i).setCellValue(columns[i]);
+            int rowNum = 1;
+            for (int site = 0; site < sites; site++) {
+                String siteName = site == 0 ? "Karol Bagh" : "Site " + site;
+                for (int emp = 0; emp < employeesPerSite; emp++) {
+                    long empId = site == 0 && emp == 0 ? 88023 : site == 0 && emp == 1 ? 87140 : 10_000L + site * 1_000L + emp;
+                    boolean nightShift = site == 0 && emp < 2;
+                    for (int day = 0; day <= month.lengthOfMonth() + 1; day++) {
+                        LocalDateTime shiftStart = month.atDay(1).minusDays(1).plusDays(day)
+                                .atTime(nightShift ? 18 : 9, random.nextInt(30));
+                        for (int p = 0; p < punchesPerDay; p++) {
+                            LocalDateTime punch = shiftStart.plusMinutes((long) p * 540 / Math.max(1, punchesPerDay - 1) + random.nextInt(20));
+                            int copies = random.nextDouble() < duplicateRate ? 2 : 1;
+                            for (int c = 0; c < copies; c++) {
+                                Row row = sheet.createRow(rowNum++);
+                                row.createCell(0).setCellValue(siteName);
+                                row.createCell(1).setCellValue(empId);
+                                row.createCell(2).setCellValue("Employee " + empId);
+                                row.createCell(3).setCellValue(punch.plusMinutes(c * 3L));
+                                row.getCell(3).setCellStyle(dateStyle);
+                                row.createCell(4).setCellValue("Dept " + emp % 5);
+                            }
+                        }
+                    }
+                }
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+        }
+        return file;
+    }
+
+    public static PunchDataset read(Path file) throws Exception {
+        PunchChunks chunks = new PunchChunks(rows -> { });
+        new StreamingPunchReader(null).read(file, chunks);
+        return chunks.build(file.getFileName().toString());
+    }
+
+    /** The same punches as {@code workbook}, written as CSV with "M/d/yy H:mm" punch times. */
+    public static Path writeCsv(Path workbook) throws Exception {
+        PunchDataset dataset = read(workbook);
+        Path file = Files.createTempFile("synthetic-punches-", ".csv");
+        file.toFile().deleteOnExit();
+        DateTimeFormatter punchFormat = DateTimeFormatter.ofPattern("M/d/yy H:mm");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.print("DeviceName,IDNo,Name,PunchTime,Department\r\n");
+            for (int site = 0; site < dataset.siteCount(); site++) {
+                for (int row = dataset.siteStart(site); row < dataset.siteEnd(site); row++) {
+                    int employee = dataset.employee(row);
+                    LocalDateTime punch = LocalDateTime.ofEpochSecond(dataset.minute(row) * 60, 0, ZoneOffset.UTC);
+                    out.print(dataset.siteName(site) + ',' + dataset.employeeId(employee) + ',' + dataset.employeeName(employee) + ','
+                            + punchFormat.format(punch) + ',' + dataset.department(row) + "\r\n");
+                }
+            }
+        }
+        return file;
+    }
+
+    /** Parses a CSV export on {@code executor} in chunks of {@code chunkBytes}; a null executor stays on the caller. */
+    public static PunchDataset readCsv(Path file, ExecutorService executor, int chunkBytes) throws Exception {
+        PunchChunks chunks = new PunchChunks(rows -> { });
+        new DelimitedPunchReader(executor, chunkBytes).read(file, chunks);
+        return chunks.build(file.getFileName().toString());
+    }
+}
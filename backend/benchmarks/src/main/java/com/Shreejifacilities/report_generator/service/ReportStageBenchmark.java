@@ -0,0 +1,141 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.ingest.SyntheticPunchWorkbook;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleRegistry;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grouping, calculation and sheet rendering for each report, measured separately over one parsed dataset.
+ * Every stage gets the previous stage's output precomputed in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportStageBenchmark {
+
+    private static final int YEAR = SyntheticPunchWorkbook.YEAR, MONTH = SyntheticPunchWorkbook.MONTH;
+
+    @Param({"10", "40"})
+    public int sites;
+
+    @Param({"50"})
+    public int employeesPerSite;
+
+    @Param({"4"})
+    public int punchesPerDay;
+
+    @Param({"0.1"})
+    public double duplicateRate;
+
+    private final MusterRollService musterRollService = new MusterRollService();
+    private final AttendanceSummaryService attendanceSummaryService = new AttendanceSummaryService();
+    private final DailyWorkService dailyWorkService = new DailyWorkService();
+
+    private PunchDataset dataset;
+    private ShiftRuleTable rules;
+    private int[] musterDays, attendanceDays, dailyDays;
+    private List<MusterRollSite> musterData;
+    private List<Map<String, Object>> dailyData;
+    private List<Map<String, Object>> attendanceData;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        dataset = SyntheticPunchWorkbook.read(SyntheticPunchWorkbook.write(sites, employeesPerSite, punchesPerDay, duplicateRate));
+        rules = new ShiftRuleRegistry("").compile(dataset);
+        musterDays = musterRollService.groupPunchesByLogicalDay(dataset, rules, YEAR, MONTH, ReportProgress.NONE);
+        attendanceDays = attendanceSummaryService.groupPunchesByLogicalDay(dataset, rules, YEAR, MONTH, ReportProgress.NONE);
+        dailyDays = dailyWorkService.groupPunchesByLogicalDay(dataset, rules, YEAR, MONTH, ReportProgress.NONE);
+        musterData = calculateMusterRollData();
+        attendanceData = calculateAttendanceData();
+        dailyData = calculateWorkData();
+    }
+
+    @Benchmark
+    public int[] groupPunchesByLogicalDayMusterRoll() {
+        return musterRollService.groupPunchesByLogicalDay(dataset, rules, YEAR, MONTH, ReportProgress.NONE);
+    }
+
+    @Benchmark
+    public int[] groupPunchesByLogicalDayAttendance() {
+        return attendanceSummaryService.groupPunchesByLogicalDay(dataset, rules, YEAR, MONTH, ReportProgress.NONE);
+    }
+
+    @Benchmark
+    public int[] groupPunchesByLogicalDayDailyWork() {
+        return dailyWorkService.groupPunchesByLogicalDay(dataset, rules, YEAR, MONTH, ReportProgress.NONE);
+    }
+
+    @Benchmark
+    public List<MusterRollSite> calculateMusterRollData() {
+        List<MusterRollSite> sitesData = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            sitesData.add(musterRollService.calculateMusterRollData(dataset, rules, musterDays, site, YEAR, MONTH, ReportProgress.NONE));
+        }
+        return sitesData;
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> calculateAttendanceData() {
+        return attendanceSummaryService.calculateAttendanceData(dataset, rules, attendanceDays, ReportProgress.NONE, 8.0, 9.0);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> calculateWorkData() {
+        List<Map<String, Object>> sitesData = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            sitesData.add(dailyWorkService.calculateWorkData(dataset, rules, dailyDays, site, YEAR, MONTH, ReportProgress.NONE));
+        }
+        return sitesData;
+    }
+
+    @Benchmark
+    public void generateMusterRollSheets() throws Exception {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+        try (workbook) {
+            ReportStyles styles = new ReportStyles(workbook);
+            for (int site = 0; site < musterData.size(); site++) {
+                musterRollService.generateMusterRollSheet(workbook, styles, dataset.siteName(site), musterData.get(site), YEAR, MONTH - 1);
+            }
+            workbook.write(OutputStream.nullOutputStream());
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    @Benchmark
+    public void generateAttendanceSheet() throws Exception {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+        try (workbook) {
+            attendanceSummaryService.generateReportSheet(workbook, new ReportStyles(workbook), "Summary (8-Hour Shift)", "January 2024", 8.0, attendanceData.get(0));
+            workbook.write(OutputStream.nullOutputStream());
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    @Benchmark
+    public void generateDailyWorkSheets() throws Exception {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+        try (workbook) {
+            ReportStyles styles = new ReportStyles(workbook);
+            for (int site = 0; site < dailyData.size(); site++) {
+                dailyWorkService.generateSheetFromData(workbook, styles, dataset.siteName(site), dailyData.get(site));
+            }
+            workbook.write(OutputStream.nullOutputStream());
+        } finally {
+            workbook.dispose();
+        }
+    }
+}
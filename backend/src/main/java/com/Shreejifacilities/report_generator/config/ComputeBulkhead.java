@@ -0,0 +1,54 @@
+package com.Shreejifacilities.report_generator.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds how many uploads are parsed and reports calculated or rendered at once. Requests run on virtual
+ * threads, so any number of them can be accepted and wait here cheaply; only the POI-heavy sections hold a
+ * permit, granted in arrival order. 0 means one permit per core. Sections must not nest.
+ */
+@Component
+public class ComputeBulkhead implements MeterBinder {
+
+    private final int limit;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /** Returned by {@link #enter()}; closing it hands the permit back. */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public ComputeBulkhead(@Value("${report.compute.max-concurrent:0}") int maxConcurrent) {
+        this.limit = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(limit, true);
+    }
+
+    public Permit enter() throws InterruptedIOException {
+        waiting.incrementAndGet();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a compute permit.");
+        } finally {
+            waiting.decrementAndGet();
+        }
+        return permits::release;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("report.compute.active", permits, p -> limit - p.availablePermits()).register(registry);
+        Gauge.builder("report.compute.waiting", waiting, AtomicInteger::get).register(registry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.Shreejifacilities.report_generator.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/** Runs independent ingest or report tasks on the compute pool and hands results back in submission order. */
+public final class OrderedFanOut {
+
+    private OrderedFanOut() {
+    }
+
+    public static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        if (executor == null || tasks.size() < 2) {
+            List<T> results = new ArrayList<>(tasks.size());
+            try {
+                for (Callable<T> task : tasks) results.add(task.call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return results;
+        }
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Report calculation was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.Shreejifacilities.report_generator.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ReportExecutorConfig {
+
+    /**
+     * Pool the report services fan per-site and per-shift calculations out to. Bounded so concurrent report
+     * requests share the cores instead of each spawning its own threads; 0 means one thread per core.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService reportComputeExecutor(@Value("${report.compute.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Workers for asynchronous report jobs. The queue is bounded so a burst of submissions is refused with
+     * backpressure instead of piling uploads up on disk.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService reportJobExecutor(@Value("${report.jobs.workers:2}") int workers,
+                                             @Value("${report.jobs.queue-capacity:16}") int queueCapacity) {
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity));
+    }
+}
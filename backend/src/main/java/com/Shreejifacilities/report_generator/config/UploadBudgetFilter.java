@@ -0,0 +1,125 @@
+package com.Shreejifacilities.report_generator.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admits multipart uploads against a per-request ceiling and a budget of upload bytes being received or parsed
+ * at once, before the multipart body is read. Requests over the ceiling get 413, requests that would overrun the
+ * budget get 503 with Retry-After. A request without a Content-Length is charged the full ceiling; the multipart
+ * size limits stop it if it turns out larger. The charge is released when the request returns, unless a handler
+ * has taken it over with {@link #takeCharge} to hold until an upload it spooled for later has been parsed.
+ */
+@Component
+public class UploadBudgetFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private final long maxBytes;
+    private final long maxInFlightBytes;
+    private final AtomicLong inFlightBytes = new AtomicLong();
+
+    private static final String CHARGE_ATTRIBUTE = UploadBudgetFilter.class.getName() + ".charge";
+
+    /** An admitted upload's share of the budget; closing it more than once releases it once. */
+    public static final class Charge implements AutoCloseable {
+        public static final Charge NONE = new Charge(new AtomicLong(), 0);
+
+        private final AtomicLong inFlightBytes;
+        private final long bytes;
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        private Charge(AtomicLong inFlightBytes, long bytes) {
+            this.inFlightBytes = inFlightBytes;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (open.compareAndSet(true, false)) inFlightBytes.addAndGet(-bytes);
+        }
+    }
+
+    public UploadBudgetFilter(@Value("${report.upload.max-bytes:104857600}") long maxBytes,
+                              @Value("${report.upload.max-in-flight-bytes:268435456}") long maxInFlightBytes) {
+        this.maxBytes = maxBytes;
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        try {
+            return contentType == null || !MediaType.MULTIPART_FORM_DATA.isCompatibleWith(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Hands the request's charge to the caller, who must close it; the request no longer releases it on return.
+     * Returns {@link Charge#NONE} for a request that was not charged.
+     */
+    public static Charge takeCharge(HttpServletRequest request) {
+        Object charge = request.getAttribute(CHARGE_ATTRIBUTE);
+        request.removeAttribute(CHARGE_ATTRIBUTE);
+        return charge instanceof Charge taken ? taken : Charge.NONE;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        if (length > maxBytes) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Upload of " + length + " bytes exceeds the " + maxBytes + " byte limit.");
+            return;
+        }
+        long bytes = length >= 0 ? length : maxBytes;
+        if (!tryAcquire(bytes)) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Too many uploads are being processed; try again shortly.");
+            return;
+        }
+        Charge charge = new Charge(inFlightBytes, bytes);
+        request.setAttribute(CHARGE_ATTRIBUTE, charge);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.getAttribute(CHARGE_ATTRIBUTE) == charge) charge.close();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("report.upload.in.flight", inFlightBytes, AtomicLong::get).baseUnit("bytes").register(registry);
+    }
+
+    /** A lone upload is always admitted, so a budget smaller than the ceiling cannot lock uploads out. */
+    private boolean tryAcquire(long bytes) {
+        while (true) {
+            long current = inFlightBytes.get();
+            if (current > 0 && current + bytes > maxInFlightBytes) return false;
+            if (inFlightBytes.compareAndSet(current, current + bytes)) return true;
+        }
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(("{\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+}
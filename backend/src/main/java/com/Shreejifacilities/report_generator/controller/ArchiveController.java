@@ -0,0 +1,199 @@
+package com.Shreejifacilities.report_generator.controller;
+
+import com.Shreejifacilities.report_generator.ingest.PunchArchive;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.ingest.PunchDatasetStore;
+import com.Shreejifacilities.report_generator.service.ReportDispatcher;
+import com.Shreejifacilities.report_generator.service.ReportProgress;
+import com.Shreejifacilities.report_generator.service.ReportWriter;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@RestController
+@RequestMapping("/reports/archive")
+public class ArchiveController {
+
+    private static final int MAX_RANGE_MONTHS = 24;
+
+    @Autowired
+    private PunchArchive punchArchive;
+
+    @Autowired
+    private PunchDatasetStore punchDatasetStore;
+
+    @Autowired
+    private ReportDispatcher reportDispatcher;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> archiveUpload(@RequestParam("file") MultipartFile file) {
+        try {
+            PunchDataset dataset = punchDatasetStore.ingest(file);
+            PunchArchive.MergeResult merged = punchArchive.merge(dataset);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("datasetId", dataset.getId());
+            body.put("punches", dataset.size());
+            body.put("added", merged.added());
+            body.put("duplicates", merged.duplicates());
+            body.put("partitionsWritten", merged.partitions());
+            ReportController.putDateOrder(body, dataset);
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * One workbook per month of the range, zipped together. Months with nothing archived are left out; each
+     * month is loaded and calculated only when its entry is written.
+     */
+    @GetMapping("/{reportType}/excel")
+    public ResponseEntity<StreamingResponseBody> createRangeExcel(
+            @PathVariable String reportType,
+            @RequestParam("from") String from,
+            @RequestParam("to") String to,
+            @RequestParam(value = "site", required = false) String site) {
+        List<YearMonth> range = ReportDispatcher.REPORT_TYPES.contains(reportType) ? range(from, to) : null;
+        if (range == null) return ResponseEntity.badRequest().build();
+        List<YearMonth> months;
+        try {
+            months = punchArchive.archivedMonths(range, site);
+        } catch (Exception e) {
+            return ReportController.jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+        String fileName = String.format("%s_%s_to_%s.zip", reportType, from, to);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(outputStream -> {
+                    ZipOutputStream zip = new ZipOutputStream(outputStream);
+                    for (YearMonth month : months) {
+                        PunchDataset dataset = punchArchive.load(month, site);
+                        if (dataset == null) continue;
+                        ReportWriter report = report(() -> reportDispatcher.excel(dataset, reportType, month.getYear(), month.getMonthValue(), ReportProgress.NONE));
+                        zip.putNextEntry(new ZipEntry(ReportDispatcher.fileName(reportType, month.getYear(), month.getMonthValue(), "xlsx")));
+                        report.writeTo(CloseShieldOutputStream.wrap(zip));
+                        zip.closeEntry();
+                    }
+                    zip.finish();
+                });
+    }
+
+    /** A JSON array holding each month's report document, oldest first, each calculated as it is written. */
+    @GetMapping(value = "/{reportType}/json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> createRangeJson(
+            @PathVariable String reportType,
+            @RequestParam("from") String from,
+            @RequestParam("to") String to,
+            @RequestParam(value = "site", required = false) String site,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
+        List<YearMonth> range = ReportDispatcher.REPORT_TYPES.contains(reportType) ? range(from, to) : null;
+        if (range == null) return ResponseEntity.badRequest().build();
+        List<YearMonth> months;
+        try {
+            months = punchArchive.archivedMonths(range, site);
+        } catch (Exception e) {
+            return ReportController.jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(outputStream -> {
+            outputStream.write('[');
+            boolean first = true;
+            for (YearMonth month : months) {
+                PunchDataset dataset = punchArchive.load(month, site);
+                if (dataset == null) continue;
+                ReportWriter report = report(() -> reportDispatcher.json(dataset, reportType, month.getYear(), month.getMonthValue(), compact, ReportProgress.NONE));
+                if (!first) outputStream.write(compact ? ",".getBytes(StandardCharsets.UTF_8) : ",\n".getBytes(StandardCharsets.UTF_8));
+                report.writeTo(outputStream);
+                first = false;
+            }
+            outputStream.write(']');
+        });
+    }
+
+    /**
+     * Each employee's attendance for every archived month of the range, with their total, half days and missing
+     * punches across it; one sheet per site.
+     */
+    @GetMapping("/totals/excel")
+    public ResponseEntity<StreamingResponseBody> createTotalsExcel(
+            @RequestParam("from") String from,
+            @RequestParam("to") String to,
+            @RequestParam(value = "site", required = false) String site) {
+        List<YearMonth> range = range(from, to);
+        if (range == null) return ResponseEntity.badRequest().build();
+        try {
+            List<YearMonth> months = punchArchive.archivedMonths(range, site);
+            if (months.isEmpty()) return ReportController.jsonError(HttpStatus.NOT_FOUND, "Nothing is archived between " + from + " and " + to + ".");
+            ReportWriter report = reportDispatcher.rangeExcel(range, month -> months.contains(month) ? punchArchive.load(month, site) : null);
+            String fileName = String.format("Attendance_Totals_%s_to_%s.xlsx", from, to);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(report::writeTo);
+        } catch (Exception e) {
+            return ReportController.jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/totals/json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> createTotalsJson(
+            @RequestParam("from") String from,
+            @RequestParam("to") String to,
+            @RequestParam(value = "site", required = false) String site,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
+        List<YearMonth> range = range(from, to);
+        if (range == null) return ResponseEntity.badRequest().build();
+        try {
+            List<YearMonth> months = punchArchive.archivedMonths(range, site);
+            if (months.isEmpty()) return ReportController.jsonError(HttpStatus.NOT_FOUND, "Nothing is archived between " + from + " and " + to + ".");
+            ReportWriter report = reportDispatcher.rangeJson(range, month -> months.contains(month) ? punchArchive.load(month, site) : null, compact);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(report::writeTo);
+        } catch (Exception e) {
+            return ReportController.jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /** Returns null when the range is malformed or longer than {@link #MAX_RANGE_MONTHS}. */
+    private static List<YearMonth> range(String from, String to) {
+        YearMonth first, last;
+        try {
+            first = YearMonth.parse(from);
+            last = YearMonth.parse(to);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+        if (last.isBefore(first) || first.plusMonths(MAX_RANGE_MONTHS).isBefore(last.plusMonths(1))) return null;
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) months.add(month);
+        return months;
+    }
+
+    /** Dispatcher failures surface as I/O errors of the response being streamed. */
+    private static ReportWriter report(Callable<ReportWriter> dispatch) throws IOException {
+        try {
+            return dispatch.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -1,120 +1,269 @@
 package com.Shreejifacilities.report_generator.controller;
 
-import com.Shreejifacilities.report_generator.service.AttendanceSummaryService;
-import com.Shreejifacilities.report_generator.service.DailyWorkService;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.ingest.PunchDatasetStore;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleRegistry;
 import com.Shreejifacilities.report_generator.service.MusterRollService;
+import com.Shreejifacilities.report_generator.service.ReportDispatcher;
+import com.Shreejifacilities.report_generator.service.ReportProgress;
+import com.Shreejifacilities.report_generator.service.ReportResultCache;
+import com.Shreejifacilities.report_generator.service.ReportWriter;
+import com.Shreejifacilities.report_generator.service.RunningMusterRoll;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/reports")
 public class ReportController {
 
 
+    @Autowired
+    private ReportDispatcher reportDispatcher;
+
     @Autowired
     private MusterRollService musterRollService;
 
     @Autowired
-    private AttendanceSummaryService attendanceSummaryService;
+    private PunchDatasetStore punchDatasetStore;
 
     @Autowired
-    private DailyWorkService dailyWorkService;
+    private ReportResultCache reportResultCache;
 
+    @Autowired
+    private ShiftRuleRegistry shiftRuleRegistry;
+
+    private static final ObjectMapper JSON_ERRORS = new ObjectMapper();
 
 
     @PostMapping("/muster-roll/excel")
-    public ResponseEntity<byte[]> createMusterRollExcel(
+    public ResponseEntity<StreamingResponseBody> createMusterRollExcel(
             @RequestParam("file") MultipartFile file,
             @RequestParam("year") int year,
             @RequestParam("month") int month) {
         try {
-            byte[] excelContent = musterRollService.generateExcelReport(file.getInputStream(), year, month);
+            ReportWriter report = excelReport(punchDatasetStore.ingest(file), "muster-roll", year, month);
             String fileName = String.format("Muster_Roll_Report_%d_%d.xlsx", month, year);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(excelContent);
+                    .body(report::writeTo);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
     @PostMapping(value = "/muster-roll/json", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> createMusterRollJson(
+    public ResponseEntity<StreamingResponseBody> createMusterRollJson(
             @RequestParam("file") MultipartFile file,
             @RequestParam("year") int year,
-            @RequestParam("month") int month) {
+            @RequestParam("month") int month,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
         try {
-            String jsonContent = musterRollService.generateJsonReport(file.getInputStream(), year, month);
-            return ResponseEntity.ok(jsonContent);
+            ReportWriter report = jsonReport(punchDatasetStore.ingest(file), "muster-roll", year, month, compact);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(report::writeTo);
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("{\"error\": \"" + e.getMessage() + "\"}");
+            return jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
         }
     }
 
     @PostMapping("/attendance-summary/excel")
-    public ResponseEntity<byte[]> createAttendanceSummaryExcel(
+    public ResponseEntity<StreamingResponseBody> createAttendanceSummaryExcel(
             @RequestParam("file") MultipartFile file,
             @RequestParam("year") int year,
             @RequestParam("month") int month) {
         try {
-            byte[] excelContent = attendanceSummaryService.generateExcelReport(file.getInputStream(), year, month);
+            ReportWriter report = excelReport(punchDatasetStore.ingest(file), "attendance-summary", year, month);
             String fileName = String.format("Attendance_Summary_Report_%d_%d.xlsx", month, year);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(excelContent);
+                    .body(report::writeTo);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
     @PostMapping(value = "/attendance-summary/json", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> createAttendanceSummaryJson(
+    public ResponseEntity<StreamingResponseBody> createAttendanceSummaryJson(
             @RequestParam("file") MultipartFile file,
             @RequestParam("year") int year,
-            @RequestParam("month") int month) {
+            @RequestParam("month") int month,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
         try {
-            String jsonContent = attendanceSummaryService.generateJsonReport(file.getInputStream(), year, month);
-            return ResponseEntity.ok(jsonContent);
+            ReportWriter report = jsonReport(punchDatasetStore.ingest(file), "attendance-summary", year, month, compact);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(report::writeTo);
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("{\"error\": \"" + e.getMessage() + "\"}");
+            return jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
         }
     }
     @PostMapping("/daily-work/excel")
-    public ResponseEntity<byte[]> createDailyWorkExcel(
+    public ResponseEntity<StreamingResponseBody> createDailyWorkExcel(
             @RequestParam("file") MultipartFile file,
             @RequestParam("year") int year,
             @RequestParam("month") int month) {
         try {
-            byte[] excelContent = dailyWorkService.generateExcelReport(file.getInputStream(), year, month);
+            ReportWriter report = excelReport(punchDatasetStore.ingest(file), "daily-work", year, month);
             String fileName = String.format("Daily_Work_Report_%d_%d.xlsx", month, year);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(excelContent);
+                    .body(report::writeTo);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
     @PostMapping(value = "/daily-work/json", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> createDailyWorkJson(
+    public ResponseEntity<StreamingResponseBody> createDailyWorkJson(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("year") int year,
+            @RequestParam("month") int month,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
+        try {
+            ReportWriter report = jsonReport(punchDatasetStore.ingest(file), "daily-work", year, month, compact);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(report::writeTo);
+        } catch (Exception e) {
+            return jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Merges a delta export into the running muster rolls; punches go to the month of their logical day when it is
+     * {@code month} or a neighbouring one. The running state lives only in memory: a restart loses it, and beyond
+     * {@code report.muster.running-months} months the least recently used month is evicted.
+     */
+    @PostMapping("/muster-roll/delta")
+    public ResponseEntity<Map<String, Object>> applyMusterRollDelta(
             @RequestParam("file") MultipartFile file,
             @RequestParam("year") int year,
             @RequestParam("month") int month) {
         try {
-            String jsonContent = dailyWorkService.generateJsonReport(file.getInputStream(), year, month);
-            return ResponseEntity.ok(jsonContent);
+            PunchDataset dataset = punchDatasetStore.ingest(file);
+            RunningMusterRoll.DeltaResult result = musterRollService.applyDelta(dataset, year, month);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("punches", result.punches());
+            body.put("added", result.added());
+            body.put("employeeDaysRecomputed", result.employeeDaysRecomputed());
+            putDateOrder(body, dataset);
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @GetMapping("/muster-roll/running/excel")
+    public ResponseEntity<StreamingResponseBody> getRunningMusterRollExcel(@RequestParam("year") int year, @RequestParam("month") int month) {
+        ReportWriter report = musterRollService.generateRunningExcelReport(year, month);
+        if (report == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + ReportDispatcher.fileName("muster-roll", year, month, "xlsx") + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(report::writeTo);
+    }
+
+    @GetMapping(value = "/muster-roll/running/json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getRunningMusterRollJson(
+            @RequestParam("year") int year,
+            @RequestParam("month") int month,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
+        ReportWriter report = musterRollService.generateRunningJsonReport(year, month, compact);
+        if (report == null) return jsonError(HttpStatus.NOT_FOUND, "No deltas have been applied for " + month + "/" + year);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(report::writeTo);
+    }
+
+    @PostMapping("/datasets")
+    public ResponseEntity<Map<String, Object>> uploadDataset(@RequestParam("file") MultipartFile file) {
+        try {
+            PunchDataset dataset = punchDatasetStore.ingest(file);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("datasetId", dataset.getId());
+            body.put("punches", dataset.size());
+            putDateOrder(body, dataset);
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @GetMapping("/datasets/{datasetId}/{reportType}/excel")
+    public ResponseEntity<StreamingResponseBody> createDatasetExcel(
+            @PathVariable String datasetId,
+            @PathVariable String reportType,
+            @RequestParam("year") int year,
+            @RequestParam("month") int month) {
+        PunchDataset dataset = punchDatasetStore.get(datasetId);
+        if (dataset == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        try {
+            if (!ReportDispatcher.REPORT_TYPES.contains(reportType)) return ResponseEntity.badRequest().build();
+            ReportWriter report = excelReport(dataset, reportType, year, month);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + ReportDispatcher.fileName(reportType, year, month, "xlsx") + "\"")
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(report::writeTo);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping(value = "/datasets/{datasetId}/{reportType}/json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> createDatasetJson(
+            @PathVariable String datasetId,
+            @PathVariable String reportType,
+            @RequestParam("year") int year,
+            @RequestParam("month") int month,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
+        PunchDataset dataset = punchDatasetStore.get(datasetId);
+        if (dataset == null) return jsonError(HttpStatus.NOT_FOUND, "Unknown dataset " + datasetId);
+        if (!ReportDispatcher.REPORT_TYPES.contains(reportType)) return jsonError(HttpStatus.BAD_REQUEST, "Unknown report type " + reportType);
+        try {
+            ReportWriter report = jsonReport(dataset, reportType, year, month, compact);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(report::writeTo);
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("{\"error\": \"" + e.getMessage() + "\"}");
+            return jsonError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
         }
     }
+
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return reportResultCache.stats();
+    }
+
+    @GetMapping("/shift-rules")
+    public Map<String, Object> shiftRules() {
+        return shiftRuleRegistry.describe();
+    }
+
+    private ReportWriter excelReport(PunchDataset dataset, String reportType, int year, int month) throws Exception {
+        return reportDispatcher.excel(dataset, reportType, year, month, ReportProgress.NONE);
+    }
+
+    private ReportWriter jsonReport(PunchDataset dataset, String reportType, int year, int month, boolean compact) throws Exception {
+        return reportDispatcher.json(dataset, reportType, year, month, compact, ReportProgress.NONE);
+    }
+
+    /** How the upload's slashed dates were read, with a warning when day-first and month-first readings mix. */
+    static void putDateOrder(Map<String, Object> body, PunchDataset dataset) {
+        PunchDataset.DateOrder dateOrder = dataset.dateOrder();
+        body.put("dateOrder", dateOrder);
+        if (dateOrder.suspicious()) body.put("warning", dateOrder.warning());
+    }
+
+    static ResponseEntity<StreamingResponseBody> jsonError(HttpStatus status, String message) {
+        byte[] body = JSON_ERRORS.createObjectNode().put("error", String.valueOf(message)).toString().getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(outputStream -> outputStream.write(body));
+    }
 }
@@ -0,0 +1,83 @@
+package com.Shreejifacilities.report_generator.controller;
+
+import com.Shreejifacilities.report_generator.config.UploadBudgetFilter;
+import com.Shreejifacilities.report_generator.job.ReportJob;
+import com.Shreejifacilities.report_generator.job.ReportJobService;
+import com.Shreejifacilities.report_generator.service.ReportDispatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/reports/jobs")
+public class ReportJobController {
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("reportType") String reportType,
+            @RequestParam(value = "format", defaultValue = "excel") String format,
+            @RequestParam("year") int year,
+            @RequestParam("month") int month,
+            @RequestParam(value = "compact", defaultValue = "false") boolean compact,
+            HttpServletRequest request) {
+        if (!ReportDispatcher.REPORT_TYPES.contains(reportType)) return ResponseEntity.badRequest().body(Map.of("error", "Unknown report type " + reportType));
+        if (!"excel".equals(format) && !"json".equals(format)) return ResponseEntity.badRequest().body(Map.of("error", "Unknown format " + format));
+        try {
+            ReportJob job = reportJobService.submit(file, reportType, format, year, month, compact, UploadBudgetFilter.takeCharge(request));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toStatus());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", "Too many report jobs are queued; try again shortly."));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        ReportJob job = reportJobService.get(jobId);
+        if (job == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        return ResponseEntity.ok(job.toStatus());
+    }
+
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<StreamingResponseBody> downloadResult(@PathVariable String jobId) {
+        ReportJob job = reportJobService.get(jobId);
+        if (job == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        if (job.getStatus() != ReportJob.Status.DONE) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if ("excel".equals(job.getFormat())) {
+            response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + ReportDispatcher.fileName(job.getReportType(), job.getYear(), job.getMonth(), "xlsx") + "\"")
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM);
+        } else {
+            response.contentType(MediaType.APPLICATION_JSON);
+        }
+        InputStream result;
+        try {
+            result = reportJobService.openResult(job);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+        if (result == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        return response.body(outputStream -> {
+            try (result) {
+                result.transferTo(outputStream);
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.Shreejifacilities.report_generator.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.util.Map;
+
+/** Uploads sent without a Content-Length only hit the multipart size limits once they are being read. */
+@RestControllerAdvice
+public class UploadLimitAdvice {
+
+    @Value("${report.upload.max-bytes:104857600}")
+    private long maxBytes;
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, Object>> uploadTooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", "Upload exceeds the " + maxBytes + " byte limit."));
+    }
+}
@@ -0,0 +1,240 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import com.Shreejifacilities.report_generator.config.OrderedFanOut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Reader for CSV and TSV exports with the same DeviceName/IDNo/Name/PunchTime/Department columns as the
+ * workbook. The file is memory-mapped and tokenized in place: field bounds are byte offsets into the mapping,
+ * punch times are parsed from a small reused buffer, and site, id, name and department strings are only built
+ * when they differ from the previous row's. Fields may be quoted with doubled quotes inside, as in RFC 4180.
+ * Files larger than one chunk are split at line breaks and the chunks are parsed in parallel, so a quoted
+ * field must not itself contain a line break.
+ */
+@Component
+public class DelimitedPunchReader {
+
+    @Autowired
+    private ExecutorService reportComputeExecutor;
+
+    @Value("${report.ingest.chunk-bytes:4194304}")
+    private int chunkBytes;
+
+    public DelimitedPunchReader() {
+    }
+
+    /** For use outside Spring, e.g. benchmarks; a null executor parses the chunks one after another. */
+    DelimitedPunchReader(ExecutorService executor, int chunkBytes) {
+        this.reportComputeExecutor = executor;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /** Tab when the first line has any, otherwise whichever of comma and semicolon it has more of. */
+    static byte sniffDelimiter(ByteBuffer in, int from) {
+        int tabs = 0, commas = 0, semicolons = 0;
+        for (int pos = from; pos < in.limit() && in.get(pos) != '\n'; pos++) {
+            byte b = in.get(pos);
+            if (b == '\t') tabs++;
+            else if (b == ',') commas++;
+            else if (b == ';') semicolons++;
+        }
+        if (tabs > 0) return '\t';
+        return semicolons > commas ? (byte) ';' : (byte) ',';
+    }
+
+    /**
+     * Parses every data row into {@code chunks}, one chunk per slice of the file. Text punch times use
+     * {@link PunchTimestamps}; rows without a site or a readable punch time are skipped.
+     *
+     * @return the number of punches read
+     */
+    public int read(Path file, PunchChunks chunks) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("Delimited punch exports over 2 GB are not supported.");
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int start = hasBom(in) ? 3 : 0;
+            byte delimiter = sniffDelimiter(in, start);
+            Tokenizer header = new Tokenizer(in, delimiter);
+            int pos = header.next(start);
+            Columns columns = Columns.of(header);
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int chunkStart = pos; chunkStart < in.limit(); ) {
+                int chunkEnd = chunkBytes > 0 ? lineStartAfter(in, (int) Math.min((long) chunkStart + chunkBytes, in.limit())) : in.limit();
+                int from = chunkStart;
+                PunchChunks.Chunk chunk = chunks.chunk();
+                tasks.add(() -> parseRows(new Tokenizer(in, delimiter), from, chunkEnd, columns, chunk));
+                chunkStart = chunkEnd;
+            }
+            int punchCount = 0;
+            for (int count : OrderedFanOut.invokeAll(reportComputeExecutor, tasks)) punchCount += count;
+            return punchCount;
+        }
+    }
+
+    /** The first position at or after {@code pos} that starts a line, or the end of the file. */
+    private static int lineStartAfter(ByteBuffer in, int pos) {
+        if (pos > 0 && in.get(pos - 1) == '\n') return pos;
+        while (pos < in.limit() && in.get(pos) != '\n') pos++;
+        return Math.min(pos + 1, in.limit());
+    }
+
+    private static boolean hasBom(ByteBuffer in) {
+        return in.limit() >= 3 && (in.get(0) & 0xFF) == 0xEF && (in.get(1) & 0xFF) == 0xBB && (in.get(2) & 0xFF) == 0xBF;
+    }
+
+    static int parseRows(Tokenizer tokenizer, int from, int to, Columns columns, PunchChunks.Chunk chunk) {
+        TextCache site = new TextCache(), empId = new TextCache(), name = new TextCache(), department = new TextCache();
+        int punchCount = 0;
+        for (int pos = from; pos < to; ) {
+            pos = tokenizer.next(pos);
+            if (tokenizer.fields == 1 && tokenizer.starts[0] == tokenizer.ends[0]) continue;
+            if (tokenizer.fields <= columns.required) { chunk.skippedRows++; continue; }
+            String siteValue = tokenizer.text(columns.site, site, true);
+            if (siteValue.isEmpty()) { chunk.skippedRows++; continue; }
+            long minute = tokenizer.punchMinute(columns.punch, chunk.orders);
+            if (minute == PunchTimestamps.NO_PUNCH) { chunk.skippedRows++; continue; }
+            String departmentValue = columns.department >= 0 && columns.department < tokenizer.fields ? tokenizer.text(columns.department, department, false) : "";
+            chunk.onPunch(siteValue, tokenizer.text(columns.id, empId, true), tokenizer.text(columns.name, name, true), departmentValue, minute);
+            punchCount++;
+        }
+        return punchCount;
+    }
+
+    /** Field positions of the columns the reports use, taken from the header record. */
+    record Columns(int site, int id, int name, int punch, int department, int required) {
+
+        static Columns of(Tokenizer header) {
+            Map<String, Integer> headerColumns = new HashMap<>();
+            for (int f = 0; f < header.fields; f++) headerColumns.put(header.text(f, new TextCache(), true), f);
+            if (!headerColumns.containsKey("DeviceName") || !headerColumns.containsKey("IDNo") ||
+                    !headerColumns.containsKey("Name") || !headerColumns.containsKey("PunchTime")) {
+                throw new IllegalArgumentException("A required column (DeviceName, IDNo, Name, or PunchTime) is missing.");
+            }
+            int site = headerColumns.get("DeviceName"), id = headerColumns.get("IDNo"), name = headerColumns.get("Name"), punch = headerColumns.get("PunchTime");
+            return new Columns(site, id, name, punch, headerColumns.getOrDefault("Department", -1), Math.max(Math.max(site, id), Math.max(name, punch)));
+        }
+    }
+
+    /** Splits one record at a time into field bounds; the arrays are reused from record to record. */
+    static final class Tokenizer {
+        final ByteBuffer in;
+        private final byte delimiter;
+        int fields;
+        int[] starts = new int[16], ends = new int[16];
+        boolean[] escaped = new boolean[16];
+        private final char[] punchText = new char[PunchTimestamps.MAX_LENGTH];
+
+        Tokenizer(ByteBuffer in, byte delimiter) {
+            this.in = in;
+            this.delimiter = delimiter;
+        }
+
+        /** Reads the record starting at {@code pos} and returns the position after its line break. */
+        int next(int pos) {
+            int limit = in.limit();
+            fields = 0;
+            while (true) {
+                if (fields == starts.length) {
+                    starts = Arrays.copyOf(starts, fields * 2);
+                    ends = Arrays.copyOf(ends, fields * 2);
+                    escaped = Arrays.copyOf(escaped, fields * 2);
+                }
+                boolean quoteInside = false;
+                int start, end;
+                if (pos < limit && in.get(pos) == '"') {
+                    start = ++pos;
+                    while (pos < limit) {
+                        if (in.get(pos) == '"') {
+                            if (pos + 1 < limit && in.get(pos + 1) == '"') { quoteInside = true; pos += 2; continue; }
+                            break;
+                        }
+                        pos++;
+                    }
+                    end = pos;
+                    while (pos < limit && !isFieldEnd(in.get(pos))) pos++;
+                } else {
+                    start = pos;
+                    while (pos < limit && !isFieldEnd(in.get(pos))) pos++;
+                    end = pos;
+                }
+                starts[fields] = start;
+                ends[fields] = end;
+                escaped[fields] = quoteInside;
+                fields++;
+                if (pos < limit && in.get(pos) == delimiter) { pos++; continue; }
+                if (pos < limit && in.get(pos) == '\r') pos++;
+                if (pos < limit && in.get(pos) == '\n') pos++;
+                return pos;
+            }
+        }
+
+        private boolean isFieldEnd(byte b) {
+            return b == delimiter || b == '\n' || b == '\r';
+        }
+
+        String text(int field, TextCache cache, boolean trim) {
+            int start = starts[field], end = ends[field];
+            if (trim) {
+                while (start < end && isBlank(in.get(start))) start++;
+                while (end > start && isBlank(in.get(end - 1))) end--;
+            }
+            if (escaped[field]) return decode(start, end).replace("\"\"", "\"");
+            return cache.get(in, start, end);
+        }
+
+        /** Punch times are ASCII, so each byte is widened to a char; longer fields are not punch times. */
+        long punchMinute(int field, PunchTimestamps.Orders orders) {
+            int start = starts[field], n = ends[field] - start;
+            if (n > punchText.length) return PunchTimestamps.NO_PUNCH;
+            for (int i = 0; i < n; i++) punchText[i] = (char) (in.get(start + i) & 0xFF);
+            return PunchTimestamps.parse(punchText, 0, n, orders);
+        }
+
+        private String decode(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            in.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static boolean isBlank(byte b) {
+            return b == ' ' || b == '\t';
+        }
+    }
+
+    /** The last string built for one column; consecutive rows mostly repeat site, employee and department. */
+    static final class TextCache {
+        private byte[] bytes = new byte[64];
+        private int length = -1;
+        private String value;
+
+        String get(ByteBuffer in, int start, int end) {
+            int n = end - start;
+            if (n == length) {
+                int i = 0;
+                while (i < n && bytes[i] == in.get(start + i)) i++;
+                if (i == n) return value;
+            }
+            if (n > bytes.length) bytes = new byte[Math.max(n, bytes.length * 2)];
+            in.get(start, bytes, 0, n);
+            length = n;
+            value = new String(bytes, 0, n, StandardCharsets.UTF_8);
+            return value;
+        }
+    }
+}
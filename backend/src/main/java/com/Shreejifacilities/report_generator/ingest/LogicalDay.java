@@ -0,0 +1,17 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+/**
+ * Shift-day arithmetic on wall-clock epoch minutes. A punch before the shift cutoff hour still belongs to
+ * the previous day's shift, so the cutoff is subtracted before flooring to whole days.
+ */
+public final class LogicalDay {
+
+    public static final int MINUTES_PER_DAY = 1440;
+
+    private LogicalDay() {
+    }
+
+    public static long epochDay(long punchMinute, int cutoffHour) {
+        return Math.floorDiv(punchMinute - cutoffHour * 60L, MINUTES_PER_DAY);
+    }
+}
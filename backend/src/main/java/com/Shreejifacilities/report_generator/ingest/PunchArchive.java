@@ -0,0 +1,249 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Punches from every upload merged into one file-based archive, so reports can cover months that were
+ * uploaded separately. Partitions are one file per calendar month and site, holding an employee index
+ * (id, name, first row, row count) followed by fixed-size rows of (minute, department code), each employee's
+ * rows contiguous and in time order. Merging never drops a punch: a punch already archived for the same
+ * employee and minute is counted as a duplicate, and a partition that gains punches is rewritten with the
+ * union of old and new rows rather than appended to, which is what keeps the rows sorted and the index exact.
+ * The index lets the following month's partitions, read only for night shifts that end there, be read as
+ * each employee's first-day rows with the rest skipped.
+ */
+@Component
+public class PunchArchive {
+
+    private static final int MAGIC = 0x50554E43, VERSION = 1;
+    private static final String PARTITION_SUFFIX = ".punches";
+    /** An int minute and an int department code. */
+    private static final int ROW_BYTES = 8;
+
+    private final Path root;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong generation = new AtomicLong();
+
+    public record MergeResult(int added, int duplicates, int partitions) { }
+
+    public PunchArchive(@Value("${report.archive.dir:punch-archive}") String directory) {
+        this.root = Paths.get(directory);
+    }
+
+    public MergeResult merge(PunchDataset dataset) throws IOException {
+        Map<YearMonth, Map<Integer, List<Integer>>> rowsByPartition = new TreeMap<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            for (int row = dataset.siteStart(site); row < dataset.siteEnd(site); row++) {
+                rowsByPartition.computeIfAbsent(monthOf(dataset.minute(row)), m -> new TreeMap<>())
+                        .computeIfAbsent(site, s -> new ArrayList<>()).add(row);
+            }
+        }
+        int added = 0, duplicates = 0, partitions = 0;
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<YearMonth, Map<Integer, List<Integer>>> month : rowsByPartition.entrySet()) {
+                for (Map.Entry<Integer, List<Integer>> site : month.getValue().entrySet()) {
+                    Path file = partitionFile(month.getKey(), dataset.siteName(site.getKey()));
+                    Partition partition = Files.exists(file) ? readPartition(file, Long.MAX_VALUE) : new Partition();
+                    int before = partition.size;
+                    for (int row : site.getValue()) {
+                        int employee = dataset.employee(row);
+                        partition.add(dataset.employeeId(employee), dataset.employeeName(employee), dataset.department(row), dataset.minute(row));
+                    }
+                    int partitionAdded = partition.size - before;
+                    added += partitionAdded;
+                    duplicates += site.getValue().size() - partitionAdded;
+                    if (partitionAdded > 0) {
+                        writePartition(file, partition);
+                        partitions++;
+                    }
+                }
+            }
+            if (added > 0) generation.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new MergeResult(added, duplicates, partitions);
+    }
+
+    /**
+     * Loads the punches needed to report on {@code month}: its own partitions plus the following month's,
+     * whose first-day punches can belong to a night shift that started on the last day; the cutoff is before
+     * midnight, so later ones never do and are not read. Returns null when nothing is archived for the month
+     * itself. {@code site} limits the load to one site's partitions when not null.
+     */
+    public PunchDataset load(YearMonth month, String site) throws IOException {
+        lock.readLock().lock();
+        try {
+            List<Path> ownPartitions = partitions(month, site);
+            if (ownPartitions.isEmpty()) return null;
+            PunchDataset.Builder builder = new PunchDataset.Builder();
+            for (Path file : ownPartitions) readPartition(file, Long.MAX_VALUE).forEach(siteOf(file), builder);
+            long nextMonthSecondDay = month.plusMonths(1).atDay(2).toEpochDay() * LogicalDay.MINUTES_PER_DAY;
+            for (Path file : partitions(month.plusMonths(1), site)) readPartition(file, nextMonthSecondDay).forEach(siteOf(file), builder);
+            return builder.build("archive-" + generation.get() + "-" + month + (site != null ? "-" + site : ""));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** The months of {@code months} with punches archived, for {@code site} alone when not null. */
+    public List<YearMonth> archivedMonths(List<YearMonth> months, String site) throws IOException {
+        lock.readLock().lock();
+        try {
+            List<YearMonth> archived = new ArrayList<>();
+            for (YearMonth month : months) {
+                if (!partitions(month, site).isEmpty()) archived.add(month);
+            }
+            return archived;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Path> partitions(YearMonth month, String site) throws IOException {
+        Path dir = root.resolve(month.toString());
+        if (!Files.isDirectory(dir)) return List.of();
+        if (site != null) {
+            Path file = partitionFile(month, site);
+            return Files.exists(file) ? List.of(file) : List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(PARTITION_SUFFIX)).sorted().toList();
+        }
+    }
+
+    private Path partitionFile(YearMonth month, String site) {
+        return root.resolve(month.toString()).resolve(URLEncoder.encode(site, StandardCharsets.UTF_8) + PARTITION_SUFFIX);
+    }
+
+    private static String siteOf(Path file) {
+        String name = file.getFileName().toString();
+        return URLDecoder.decode(name.substring(0, name.length() - PARTITION_SUFFIX.length()), StandardCharsets.UTF_8);
+    }
+
+    private static YearMonth monthOf(long punchMinute) {
+        return YearMonth.from(LocalDate.ofEpochDay(Math.floorDiv(punchMinute, LogicalDay.MINUTES_PER_DAY)));
+    }
+
+    /** One partition held in memory while it is merged or loaded; employees and punches stay sorted. */
+    private static class Partition {
+        final TreeMap<String, Employee> employees = new TreeMap<>();
+        final List<String> departments = new ArrayList<>();
+        final Map<String, Integer> departmentCodes = new HashMap<>();
+        int size;
+
+        record Employee(String id, String name, TreeMap<Long, Integer> punches) { }
+
+        void add(String id, String name, String department, long minute) {
+            Employee employee = employees.computeIfAbsent(id + "::" + name, k -> new Employee(id, name, new TreeMap<>()));
+            Integer code = departmentCodes.computeIfAbsent(department, d -> { departments.add(d); return departments.size() - 1; });
+            if (employee.punches.putIfAbsent(minute, code) == null) size++;
+        }
+
+        void forEach(String site, PunchDataset.Builder builder) {
+            for (Employee employee : employees.values()) {
+                for (Map.Entry<Long, Integer> punch : employee.punches.entrySet()) {
+                    builder.add(site, employee.id, employee.name, departments.get(punch.getValue()), punch.getKey());
+                }
+            }
+        }
+    }
+
+    /** Reads each employee's punches before {@code untilMinute}, seeking past the rest by the index. */
+    private static Partition readPartition(Path file, long untilMinute) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a punch archive partition: " + file);
+            Partition partition = new Partition();
+            int departmentCount = in.readInt();
+            for (int i = 0; i < departmentCount; i++) {
+                String department = in.readUTF();
+                partition.departmentCodes.put(department, i);
+                partition.departments.add(department);
+            }
+            int employeeCount = in.readInt();
+            String[] ids = new String[employeeCount], names = new String[employeeCount];
+            int[] firstRows = new int[employeeCount], rowCounts = new int[employeeCount];
+            for (int e = 0; e < employeeCount; e++) {
+                ids[e] = in.readUTF();
+                names[e] = in.readUTF();
+                firstRows[e] = in.readInt();
+                rowCounts[e] = in.readInt();
+            }
+            in.readInt();
+            int row = 0;
+            for (int e = 0; e < employeeCount; e++) {
+                in.skipNBytes((long) (firstRows[e] - row) * ROW_BYTES);
+                row = firstRows[e];
+                TreeMap<Long, Integer> punches = new TreeMap<>();
+                while (row < firstRows[e] + rowCounts[e]) {
+                    long minute = in.readInt();
+                    int department = in.readInt();
+                    row++;
+                    if (minute >= untilMinute) break;
+                    punches.put(minute, department);
+                }
+                partition.employees.put(ids[e] + "::" + names[e], new Partition.Employee(ids[e], names[e], punches));
+                partition.size += punches.size();
+            }
+            return partition;
+        }
+    }
+
+    private static void writePartition(Path file, Partition partition) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "partition-", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(partition.departments.size());
+                for (String department : partition.departments) out.writeUTF(department);
+                out.writeInt(partition.employees.size());
+                int firstRow = 0;
+                for (Partition.Employee employee : partition.employees.values()) {
+                    out.writeUTF(employee.id);
+                    out.writeUTF(employee.name);
+                    out.writeInt(firstRow);
+                    out.writeInt(employee.punches.size());
+                    firstRow += employee.punches.size();
+                }
+                out.writeInt(firstRow);
+                for (Partition.Employee employee : partition.employees.values()) {
+                    for (Map.Entry<Long, Integer> punch : employee.punches.entrySet()) {
+                        out.writeInt(Math.toIntExact(punch.getKey()));
+                        out.writeInt(punch.getValue());
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Per-chunk columnar buffers for one upload. A reader asks for a chunk per slice of its input in input order,
+ * may fill the chunks concurrently, and the chunks are merged in that order once it returns, so the dataset
+ * does not depend on which thread finished first.
+ */
+public final class PunchChunks {
+
+    private static final int PROGRESS_STEP = 4096;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final AtomicInteger parsedRows = new AtomicInteger();
+    private final IntConsumer progress;
+
+    public PunchChunks(IntConsumer progress) {
+        this.progress = progress;
+    }
+
+    /** Rows and date-order counts of one slice; only ever filled by one thread. */
+    public final class Chunk implements StreamingPunchReader.PunchRowHandler {
+        private final PunchDataset.Builder builder = new PunchDataset.Builder();
+        final PunchTimestamps.Orders orders = new PunchTimestamps.Orders();
+        /** Data rows without a site, employee or readable punch time. */
+        int skippedRows;
+
+        @Override
+        public void onPunch(String site, String empId, String name, String department, long punchMinute) {
+            builder.add(site, empId, name, department, punchMinute);
+            if (builder.size() % PROGRESS_STEP == 0) progress.accept(parsedRows.addAndGet(PROGRESS_STEP));
+        }
+    }
+
+    public synchronized Chunk chunk() {
+        Chunk chunk = new Chunk();
+        chunks.add(chunk);
+        return chunk;
+    }
+
+    public synchronized int skippedRows() {
+        int skipped = 0;
+        for (Chunk chunk : chunks) skipped += chunk.skippedRows;
+        return skipped;
+    }
+
+    public synchronized PunchDataset build(String id) {
+        PunchDataset.Builder merged = chunks.isEmpty() ? new PunchDataset.Builder() : chunks.get(0).builder;
+        PunchTimestamps.Orders orders = new PunchTimestamps.Orders();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) merged.addAll(chunks.get(i).builder);
+            orders.add(chunks.get(i).orders);
+        }
+        merged.dateOrder(new PunchDataset.DateOrder(orders.monthFirst, orders.dayFirst, orders.ambiguous));
+        PunchDataset dataset = merged.build(id);
+        progress.accept(dataset.size());
+        return dataset;
+    }
+}
@@ -0,0 +1,224 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every punch read from one uploaded export, independent of report type or month. Identified by the
+ * SHA-256 of the uploaded bytes, so the same file always maps to the same dataset.
+ * <p>
+ * Punches are held column-wise: sites, employees and departments are dictionary-encoded to ints and punch
+ * times are wall-clock minutes since 1970-01-01T00:00. Rows are sorted by site, then employee, then time,
+ * and dictionary codes follow the same ordering the reports print in, so every site and every employee
+ * within it is one contiguous row range.
+ */
+public class PunchDataset {
+
+    private final String id;
+    private final String[] siteNames;
+    private final int[] siteOffsets;
+    private final String[] empIds, empNames;
+    private final String[] departmentNames;
+    private final int[] employees, departments;
+    private final long[] minutes;
+    private final DateOrder dateOrder;
+
+    /**
+     * How the upload's slashed punch dates were read: month-first only, day-first only, or either way (read
+     * month-first). Dates whose day and month are equal, ISO dates and date-formatted cells are not counted.
+     */
+    public record DateOrder(int monthFirst, int dayFirst, int ambiguous) {
+
+        static final DateOrder NONE = new DateOrder(0, 0, 0);
+
+        /** The file has day-first dates alongside dates that were read month-first, so some are probably wrong. */
+        public boolean suspicious() {
+            return dayFirst > 0 && (ambiguous > 0 || monthFirst > 0);
+        }
+
+        public String warning() {
+            return dayFirst + " punch dates can only be day-first, but " + (ambiguous + monthFirst) +
+                    " others were read month-first; check the export's date format.";
+        }
+    }
+
+    private PunchDataset(String id, String[] siteNames, int[] siteOffsets, String[] empIds, String[] empNames,
+                         String[] departmentNames, int[] employees, int[] departments, long[] minutes, DateOrder dateOrder) {
+        this.id = id;
+        this.siteNames = siteNames;
+        this.siteOffsets = siteOffsets;
+        this.empIds = empIds;
+        this.empNames = empNames;
+        this.departmentNames = departmentNames;
+        this.employees = employees;
+        this.departments = departments;
+        this.minutes = minutes;
+        this.dateOrder = dateOrder;
+    }
+
+    public String getId() { return id; }
+
+    public int size() { return minutes.length; }
+
+    public int siteCount() { return siteNames.length; }
+
+    public String siteName(int site) { return siteNames[site]; }
+
+    /** First row of {@code site}; rows up to {@link #siteEnd(int)} all belong to it. */
+    public int siteStart(int site) { return siteOffsets[site]; }
+
+    public int siteEnd(int site) { return siteOffsets[site + 1]; }
+
+    public int employee(int row) { return employees[row]; }
+
+    public int employeeCount() { return empIds.length; }
+
+    public String employeeId(int employee) { return empIds[employee]; }
+
+    public String employeeName(int employee) { return empNames[employee]; }
+
+    public String department(int row) { return departmentNames[departments[row]]; }
+
+    public long minute(int row) { return minutes[row]; }
+
+    public DateOrder dateOrder() { return dateOrder; }
+
+    /** Collects rows in arrival order and sorts them into a {@link PunchDataset} once the upload is read. */
+    public static class Builder {
+        private static final int MINUTE_DIGIT_BITS = 16;
+
+        private final Map<String, Integer> siteCodes = new HashMap<>(), empCodes = new HashMap<>(), departmentCodes = new HashMap<>();
+        private final Map<Integer, String[]> empParts = new HashMap<>();
+        private int[] sites = new int[1024], employees = new int[1024], departments = new int[1024];
+        private long[] minutes = new long[1024];
+        private int size;
+        private DateOrder dateOrder = DateOrder.NONE;
+
+        public void add(String site, String empId, String name, String department, long punchMinute) {
+            ensureCapacity(size + 1);
+            sites[size] = siteCodes.computeIfAbsent(site, k -> siteCodes.size());
+            int emp = empCodes.computeIfAbsent(empId + "::" + name, k -> empCodes.size());
+            empParts.putIfAbsent(emp, new String[]{empId, name});
+            employees[size] = emp;
+            departments[size] = departmentCodes.computeIfAbsent(department, k -> departmentCodes.size());
+            minutes[size] = punchMinute;
+            size++;
+        }
+
+        /**
+         * Appends {@code other}'s rows after this builder's. Codes are translated through the two builders'
+         * dictionaries once per distinct site, employee and department, so merging chunks parsed in parallel
+         * never touches a row's strings.
+         */
+        public void addAll(Builder other) {
+            int[] siteMap = new int[other.siteCodes.size()];
+            other.siteCodes.forEach((site, code) -> siteMap[code] = siteCodes.computeIfAbsent(site, k -> siteCodes.size()));
+            int[] empMap = new int[other.empCodes.size()];
+            other.empCodes.forEach((key, code) -> {
+                int emp = empCodes.computeIfAbsent(key, k -> empCodes.size());
+                empParts.putIfAbsent(emp, other.empParts.get(code));
+                empMap[code] = emp;
+            });
+            int[] departmentMap = new int[other.departmentCodes.size()];
+            other.departmentCodes.forEach((department, code) -> departmentMap[code] = departmentCodes.computeIfAbsent(department, k -> departmentCodes.size()));
+            ensureCapacity(size + other.size);
+            for (int i = 0; i < other.size; i++) {
+                sites[size + i] = siteMap[other.sites[i]];
+                employees[size + i] = empMap[other.employees[i]];
+                departments[size + i] = departmentMap[other.departments[i]];
+            }
+            System.arraycopy(other.minutes, 0, minutes, size, other.size);
+            size += other.size;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= minutes.length) return;
+            int capacity = Math.max(required, minutes.length * 2);
+            sites = Arrays.copyOf(sites, capacity);
+            employees = Arrays.copyOf(employees, capacity);
+            departments = Arrays.copyOf(departments, capacity);
+            minutes = Arrays.copyOf(minutes, capacity);
+        }
+
+        public int size() { return size; }
+
+        void dateOrder(DateOrder dateOrder) { this.dateOrder = dateOrder; }
+
+        public PunchDataset build(String id) {
+            String[] siteNames = sortedKeys(siteCodes);
+            int[] siteRank = ranks(siteCodes, siteNames);
+            String[] empKeys = sortedKeys(empCodes);
+            int[] empRank = ranks(empCodes, empKeys);
+            String[] empIds = new String[empKeys.length], empNames = new String[empKeys.length];
+            for (Map.Entry<String, Integer> e : empCodes.entrySet()) {
+                String[] parts = empParts.get(e.getValue());
+                empIds[empRank[e.getValue()]] = parts[0];
+                empNames[empRank[e.getValue()]] = parts[1];
+            }
+            String[] departmentNames = new String[departmentCodes.size()];
+            departmentCodes.forEach((name, code) -> departmentNames[code] = name);
+
+            int[] order = sortedOrder(siteRank, siteNames.length, empRank, empKeys.length);
+
+            int[] sortedEmployees = new int[size], sortedDepartments = new int[size];
+            long[] sortedMinutes = new long[size];
+            int[] siteOffsets = new int[siteNames.length + 1];
+            for (int i = 0; i < size; i++) {
+                int row = order[i];
+                sortedEmployees[i] = empRank[employees[row]];
+                sortedDepartments[i] = departments[row];
+                sortedMinutes[i] = minutes[row];
+                siteOffsets[siteRank[sites[row]] + 1]++;
+            }
+            for (int s = 0; s < siteNames.length; s++) siteOffsets[s + 1] += siteOffsets[s];
+            return new PunchDataset(id, siteNames, siteOffsets, empIds, empNames, departmentNames, sortedEmployees, sortedDepartments, sortedMinutes, dateOrder);
+        }
+
+        /**
+         * Row indices ordered by site, employee and minute. A least-significant-digit radix sort: counting passes
+         * over the minute's offset from the earliest punch, 16 bits at a time (one pass for a month's export),
+         * then one by employee rank and one by site rank. Every pass is stable, so punches with equal keys keep
+         * their upload order.
+         */
+        private int[] sortedOrder(int[] siteRank, int siteCount, int[] empRank, int empCount) {
+            int[] order = new int[size], scratch = new int[size], keys = new int[size];
+            for (int row = 0; row < size; row++) order[row] = row;
+            long earliest = Long.MAX_VALUE, latest = Long.MIN_VALUE;
+            for (int row = 0; row < size; row++) {
+                earliest = Math.min(earliest, minutes[row]);
+                latest = Math.max(latest, minutes[row]);
+            }
+            for (int shift = 0; shift < Long.SIZE && size > 0 && (latest - earliest) >>> shift != 0; shift += MINUTE_DIGIT_BITS) {
+                for (int row = 0; row < size; row++) keys[row] = (int) ((minutes[row] - earliest) >>> shift) & (1 << MINUTE_DIGIT_BITS) - 1;
+                countingPass(order, scratch, keys, 1 << MINUTE_DIGIT_BITS);
+                int[] swap = order; order = scratch; scratch = swap;
+            }
+            for (int row = 0; row < size; row++) keys[row] = empRank[employees[row]];
+            countingPass(order, scratch, keys, empCount);
+            for (int row = 0; row < size; row++) keys[row] = siteRank[sites[row]];
+            countingPass(scratch, order, keys, siteCount);
+            return order;
+        }
+
+        /** Stable counting sort of the rows in {@code from} into {@code to} by {@code keys[row]}, a value below {@code buckets}. */
+        private static void countingPass(int[] from, int[] to, int[] keys, int buckets) {
+            int[] starts = new int[buckets + 1];
+            for (int row : from) starts[keys[row] + 1]++;
+            for (int bucket = 0; bucket < buckets; bucket++) starts[bucket + 1] += starts[bucket];
+            for (int row : from) to[starts[keys[row]]++] = row;
+        }
+
+        private static String[] sortedKeys(Map<String, Integer> codes) {
+            String[] keys = codes.keySet().toArray(new String[0]);
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        private static int[] ranks(Map<String, Integer> codes, String[] sortedKeys) {
+            int[] rank = new int[codes.size()];
+            for (int i = 0; i < sortedKeys.length; i++) rank[codes.get(sortedKeys[i])] = i;
+            return rank;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import com.Shreejifacilities.report_generator.config.ComputeBulkhead;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Parses each distinct upload once. Datasets are keyed by the content hash of the uploaded bytes and kept
+ * in a small LRU, so uploading the same month file for several reports only pays the parse cost once.
+ * Uploads are told apart by content: a zip package is read as an XLSX workbook, anything else as CSV or TSV.
+ * Both readers need random access, so uploads are parsed from a file on disk rather than from the request body.
+ * Each parse holds a compute permit, is timed and has its read and skipped rows counted, tagged by input format.
+ */
+@Component
+public class PunchDatasetStore {
+
+    @Autowired
+    private StreamingPunchReader punchReader;
+
+    @Autowired
+    private DelimitedPunchReader delimitedPunchReader;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ComputeBulkhead computeBulkhead;
+
+    /** Bytes hashed per mapping, so a large upload is not mapped in one piece just to be hashed. */
+    private static final long HASH_WINDOW = 64L << 20;
+
+    private final Map<String, PunchDataset> datasets;
+
+    public PunchDatasetStore(@Value("${report.datasets.max-entries:8}") int maxEntries) {
+        this.datasets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PunchDataset> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Parses a multipart upload. The servlet container has already written the part to disk, so it is moved
+     * (or, across file systems, copied once) into a spool file instead of being streamed through the heap.
+     */
+    public PunchDataset ingest(MultipartFile upload) throws Exception {
+        Path spool = Files.createTempFile("punches-", ".upload");
+        try {
+            upload.transferTo(spool.toFile());
+            return ingest(spool, parsedRows -> { });
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    /**
+     * Parses {@code upload} in place, reporting the running row count to {@code parsedRows}. The caller keeps
+     * ownership of the file.
+     */
+    public PunchDataset ingest(Path upload, IntConsumer parsedRows) throws Exception {
+        String id = contentHash(upload);
+        PunchDataset cached = get(id);
+        if (cached != null) {
+            parsedRows.accept(cached.size());
+            return cached;
+        }
+
+        String input = isZipPackage(upload) ? "xlsx" : "delimited";
+        PunchChunks chunks = new PunchChunks(parsedRows);
+        PunchDataset dataset;
+        try (ComputeBulkhead.Permit permit = computeBulkhead.enter()) {
+            long start = System.nanoTime();
+            if (input.equals("xlsx")) punchReader.read(upload, chunks);
+            else delimitedPunchReader.read(upload, chunks);
+            dataset = chunks.build(id);
+            Timer.builder("report.ingest.duration").tag("input", input)
+                    .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        Counter.builder("report.ingest.rows").tag("input", input).tag("outcome", "read").register(meterRegistry).increment(dataset.size());
+        Counter.builder("report.ingest.rows").tag("input", input).tag("outcome", "skipped").register(meterRegistry).increment(chunks.skippedRows());
+        Counter.builder("report.ingest.bytes").tag("input", input).register(meterRegistry).increment(Files.size(upload));
+        synchronized (datasets) {
+            datasets.put(id, dataset);
+        }
+        return dataset;
+    }
+
+    private static String contentHash(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += HASH_WINDOW) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(HASH_WINDOW, size - pos)));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static boolean isZipPackage(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4;
+        }
+    }
+
+    public PunchDataset get(String id) {
+        synchronized (datasets) {
+            return datasets.get(id);
+        }
+    }
+}
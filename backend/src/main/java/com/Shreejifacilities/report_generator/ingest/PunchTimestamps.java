@@ -0,0 +1,105 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import java.time.Year;
+
+/**
+ * Parses the device's text punch times in one pass over a reused char buffer, without formatters, exceptions
+ * or intermediate strings. Recognized layouts are "M/d/yy H:mm", "dd/MM/yy HH:mm" and ISO "yyyy-MM-dd HH:mm"
+ * (with a space or 'T'). A slashed date is read month-first and, when that is not a valid date, day-first,
+ * the order the shared ingest readers used. The daily work report used to parse its own punch times trying
+ * "dd/MM/yy" first, so for dates valid both ways, such as 03/04/24, its reading changed to month-first when
+ * it moved onto the shared readers; the {@link Orders} counts flag files where that matters. Anything after
+ * the minutes is ignored.
+ */
+final class PunchTimestamps {
+
+    static final long NO_PUNCH = Long.MIN_VALUE;
+
+    /** Longest text looked at; punch times are far shorter, so longer cells are not punch times. */
+    static final int MAX_LENGTH = 40;
+
+    /** Two-digit years land in the hundred years starting 80 years back, like SimpleDateFormat's "yy". */
+    private static final int CENTURY_START = Year.now().getValue() - 80;
+
+    private PunchTimestamps() {
+    }
+
+    /** How the slashed dates of one file were read, so a day-first file with misread early days can be flagged. */
+    static final class Orders {
+        int monthFirst, dayFirst, ambiguous;
+
+        void add(Orders other) {
+            monthFirst += other.monthFirst;
+            dayFirst += other.dayFirst;
+            ambiguous += other.ambiguous;
+        }
+    }
+
+    /** Wall-clock minutes since 1970-01-01T00:00 for {@code text[from, to)}, or {@link #NO_PUNCH}. */
+    static long parse(char[] text, int from, int to, Orders orders) {
+        int pos = from;
+        while (pos < to && text[pos] == ' ') pos++;
+        int a = 0, b = 0, c = 0, hour = 0, minute = 0, digits, start;
+
+        for (start = pos; pos < to && pos - start < 4 && isDigit(text[pos]); pos++) a = a * 10 + text[pos] - '0';
+        int firstDigits = pos - start;
+        if (firstDigits == 0 || pos >= to) return NO_PUNCH;
+        char separator = text[pos++];
+        boolean iso = firstDigits == 4 && separator == '-';
+        if (!iso && (firstDigits > 2 || separator != '/')) return NO_PUNCH;
+        for (digits = 0; pos < to && digits < 2 && isDigit(text[pos]); pos++, digits++) b = b * 10 + text[pos] - '0';
+        if (digits == 0 || pos >= to || text[pos++] != separator) return NO_PUNCH;
+        for (start = pos; pos < to && pos - start < (iso ? 2 : 4) && isDigit(text[pos]); pos++) c = c * 10 + text[pos] - '0';
+        int yearDigits = pos - start;
+        if (yearDigits == 0 || yearDigits == 3) return NO_PUNCH;
+        if (pos >= to || !(text[pos] == ' ' || iso && text[pos] == 'T')) return NO_PUNCH;
+        pos++;
+        while (pos < to && text[pos] == ' ') pos++;
+        for (digits = 0; pos < to && digits < 2 && isDigit(text[pos]); pos++, digits++) hour = hour * 10 + text[pos] - '0';
+        if (digits == 0 || pos >= to || text[pos++] != ':') return NO_PUNCH;
+        for (digits = 0; pos < to && digits < 2 && isDigit(text[pos]); pos++, digits++) minute = minute * 10 + text[pos] - '0';
+        if (digits == 0 || hour > 23 || minute > 59) return NO_PUNCH;
+
+        int year, month, day;
+        if (iso) {
+            year = a; month = b; day = c;
+            if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return NO_PUNCH;
+        } else {
+            year = c;
+            if (yearDigits <= 2) {
+                year += CENTURY_START / 100 * 100;
+                if (year < CENTURY_START) year += 100;
+            }
+            boolean monthFirst = a >= 1 && a <= 12 && b >= 1 && b <= daysInMonth(year, a);
+            boolean dayFirst = b >= 1 && b <= 12 && a >= 1 && a <= daysInMonth(year, b);
+            if (monthFirst) { month = a; day = b; }
+            else if (dayFirst) { month = b; day = a; }
+            else return NO_PUNCH;
+            if (a != b) {
+                if (monthFirst && dayFirst) orders.ambiguous++;
+                else if (monthFirst) orders.monthFirst++;
+                else orders.dayFirst++;
+            }
+        }
+        return epochDay(year, month, day) * LogicalDay.MINUTES_PER_DAY + hour * 60L + minute;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /** Days since 1970-01-01 in the proleptic Gregorian calendar (Howard Hinnant's days_from_civil). */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,242 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import com.Shreejifacilities.report_generator.config.OrderedFanOut;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.util.XMLHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Event-driven reader for the biometric device export. Sheets are parsed with SAX straight from the package
+ * file, so no cell tree is ever built and each punch row is handed to the caller as soon as its closing tag
+ * is seen. Exports too long for one sheet continue on further sheets with the same header; those are parsed
+ * in parallel, one chunk per sheet, and sheets after the first without the punch columns are ignored.
+ */
+@Component
+public class StreamingPunchReader {
+
+    @Autowired
+    private ExecutorService reportComputeExecutor;
+
+    public StreamingPunchReader() {
+    }
+
+    /** For use outside Spring, e.g. benchmarks; a null executor parses the sheets one after another. */
+    StreamingPunchReader(ExecutorService executor) {
+        this.reportComputeExecutor = executor;
+    }
+
+    public interface PunchRowHandler {
+        /** {@code punchMinute} is the wall-clock punch time in minutes since 1970-01-01T00:00. */
+        void onPunch(String site, String empId, String name, String department, long punchMinute);
+    }
+
+    /**
+     * Streams the workbook's punch sheets into {@code chunks}. Text punch times use {@link PunchTimestamps};
+     * rows without a site or a readable punch time are skipped.
+     *
+     * @return the number of punches read
+     */
+    public int read(Path workbookFile, PunchChunks chunks) throws Exception {
+        OPCPackage pkg = OPCPackage.open(workbookFile.toFile(), PackageAccess.READ);
+        List<InputStream> sheets = new ArrayList<>();
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            for (XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData(); it.hasNext(); ) sheets.add(it.next());
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < sheets.size(); i++) {
+                InputStream sheet = sheets.get(i);
+                SheetHandler sheetHandler = new SheetHandler(sharedStrings, styles, chunks.chunk(), i > 0);
+                tasks.add(() -> {
+                    XMLReader xmlReader = XMLHelper.newXMLReader();
+                    xmlReader.setContentHandler(sheetHandler);
+                    try {
+                        xmlReader.parse(new InputSource(sheet));
+                    } catch (NotAPunchSheet e) {
+                        return 0;
+                    }
+                    return sheetHandler.punchCount;
+                });
+            }
+            int punchCount = 0;
+            for (int count : OrderedFanOut.invokeAll(reportComputeExecutor, tasks)) punchCount += count;
+            return punchCount;
+        } finally {
+            for (InputStream sheet : sheets) sheet.close();
+            pkg.revert();
+        }
+    }
+
+    /** Thrown from a continuation sheet's header row to stop parsing a sheet that holds something else. */
+    private static class NotAPunchSheet extends RuntimeException {
+        NotAPunchSheet() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final StylesTable styles;
+        private final PunchChunks.Chunk chunk;
+        private final boolean continuation;
+        private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+        private final StringBuilder text = new StringBuilder();
+        private final char[] punchText = new char[PunchTimestamps.MAX_LENGTH];
+
+        private boolean headerSeen, inValue;
+        private int siteCol = -1, idCol = -1, nameCol = -1, punchCol = -1, deptCol = -1;
+        private int nextCol, cellCol, cellStyle;
+        private String cellType;
+        private final Map<String, Integer> headerColumns = new HashMap<>();
+        private String site, empId, name, department;
+        private long punchMinute;
+        int punchCount;
+
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings, StylesTable styles, PunchChunks.Chunk chunk, boolean continuation) {
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.chunk = chunk;
+            this.continuation = continuation;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    nextCol = 0;
+                    site = empId = name = department = null;
+                    punchMinute = PunchTimestamps.NO_PUNCH;
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    cellCol = ref != null ? columnOf(ref) : nextCol;
+                    nextCol = cellCol + 1;
+                    cellType = attributes.getValue("t");
+                    String s = attributes.getValue("s");
+                    cellStyle = s != null ? Integer.parseInt(s) : -1;
+                    text.setLength(0);
+                }
+                case "v", "t" -> inValue = true;
+                default -> { }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> inValue = false;
+                case "c" -> onCell();
+                case "row" -> onRowEnd();
+                default -> { }
+            }
+        }
+
+        private void onCell() {
+            if (!headerSeen) {
+                headerColumns.put(cellText().trim(), cellCol);
+                return;
+            }
+            if (cellCol == siteCol) site = cellText().trim();
+            else if (cellCol == idCol) empId = isNumericCell() && text.length() > 0 ? String.valueOf((long) Double.parseDouble(text.toString())) : cellText().trim();
+            else if (cellCol == nameCol) name = cellText().trim();
+            else if (cellCol == deptCol) department = cellText();
+            else if (cellCol == punchCol) {
+                if (isNumericCell()) {
+                    if (text.length() > 0 && isDateStyle(cellStyle)) punchMinute = excelSerialToMinute(Double.parseDouble(text.toString()));
+                } else {
+                    punchMinute = parseText("s".equals(cellType) ? cellText() : text);
+                }
+            }
+        }
+
+        private void onRowEnd() {
+            if (!headerSeen) {
+                headerSeen = true;
+                if (!headerColumns.containsKey("DeviceName") || !headerColumns.containsKey("IDNo") ||
+                        !headerColumns.containsKey("Name") || !headerColumns.containsKey("PunchTime")) {
+                    if (continuation) throw new NotAPunchSheet();
+                    throw new IllegalArgumentException("A required column (DeviceName, IDNo, Name, or PunchTime) is missing.");
+                }
+                siteCol = headerColumns.get("DeviceName");
+                idCol = headerColumns.get("IDNo");
+                nameCol = headerColumns.get("Name");
+                punchCol = headerColumns.get("PunchTime");
+                deptCol = headerColumns.getOrDefault("Department", -1);
+                return;
+            }
+            if (site == null || site.isEmpty() || empId == null || name == null || punchMinute == PunchTimestamps.NO_PUNCH) {
+                chunk.skippedRows++;
+                return;
+            }
+            chunk.onPunch(site, empId, name, department != null ? department : "", punchMinute);
+            punchCount++;
+        }
+
+        /** Copies the cell's characters into the reused buffer; longer cells are not punch times. */
+        private long parseText(CharSequence value) {
+            int n = value.length();
+            if (n > punchText.length) return PunchTimestamps.NO_PUNCH;
+            for (int i = 0; i < n; i++) punchText[i] = value.charAt(i);
+            return PunchTimestamps.parse(punchText, 0, n, chunk.orders);
+        }
+
+        /** Excel serials count days from 1899-12-30 in the 1900 date system; 25569 of them fall before 1970. */
+        private static long excelSerialToMinute(double serial) {
+            return Math.floorDiv(Math.round((serial - 25569.0) * 86_400_000.0), 60_000L);
+        }
+
+        private boolean isNumericCell() {
+            return cellType == null || "n".equals(cellType);
+        }
+
+        private String cellText() {
+            if ("s".equals(cellType)) return sharedStrings.getItemAt(Integer.parseInt(text.toString())).getString();
+            if ("b".equals(cellType)) return "1".equals(text.toString()) ? "TRUE" : "FALSE";
+            return text.toString();
+        }
+
+        private boolean isDateStyle(int styleIndex) {
+            if (styleIndex < 0 || styles == null) return false;
+            return dateStyles.computeIfAbsent(styleIndex, i -> {
+                XSSFCellStyle style = styles.getStyleAt(i);
+                return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+            });
+        }
+
+        private static int columnOf(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') break;
+                col = col * 26 + (c - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.Shreejifacilities.report_generator.job;
+
+import com.Shreejifacilities.report_generator.service.ReportProgress;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** One queued report request and how far it has got. Written by its worker, read by status polls. */
+public class ReportJob implements ReportProgress {
+
+    public enum Status { QUEUED, PARSING, CALCULATING, RENDERING, DONE, FAILED }
+
+    private final String id, reportType, format;
+    private final int year, month;
+    private final boolean compact;
+    private volatile Status status = Status.QUEUED;
+    private volatile int parsedRows;
+    private final AtomicInteger sitesComputed = new AtomicInteger(), sheetsWritten = new AtomicInteger();
+    private volatile Path result;
+    private volatile String error;
+    private volatile long finishedAt;
+    /** Result downloads in progress; guarded by this job. */
+    private int downloads;
+    private boolean purged;
+
+    ReportJob(String id, String reportType, String format, int year, int month, boolean compact) {
+        this.id = id;
+        this.reportType = reportType;
+        this.format = format;
+        this.year = year;
+        this.month = month;
+        this.compact = compact;
+    }
+
+    public String getId() { return id; }
+
+    public String getReportType() { return reportType; }
+
+    public String getFormat() { return format; }
+
+    public int getYear() { return year; }
+
+    public int getMonth() { return month; }
+
+    public boolean isCompact() { return compact; }
+
+    public Status getStatus() { return status; }
+
+    public Path getResult() { return result; }
+
+    long getFinishedAt() { return finishedAt; }
+
+    void setStatus(Status status) { this.status = status; }
+
+    void setParsedRows(int parsedRows) { this.parsedRows = parsedRows; }
+
+    void complete(Path result) {
+        this.result = result;
+        this.finishedAt = System.currentTimeMillis();
+        this.status = Status.DONE;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+        this.status = Status.FAILED;
+    }
+
+    /** False once the result has been purged. */
+    synchronized boolean startDownload() {
+        if (purged) return false;
+        downloads++;
+        return true;
+    }
+
+    synchronized void endDownload() { downloads--; }
+
+    /** Marks the result purged unless a download of it is in progress. */
+    synchronized boolean purge() {
+        if (downloads > 0) return false;
+        purged = true;
+        return true;
+    }
+
+    @Override
+    public void siteComputed() { sitesComputed.incrementAndGet(); }
+
+    @Override
+    public void sheetWritten() { sheetsWritten.incrementAndGet(); }
+
+    public Map<String, Object> toStatus() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", id);
+        body.put("reportType", reportType);
+        body.put("format", format);
+        body.put("status", status);
+        body.put("parsedRows", parsedRows);
+        body.put("sitesComputed", sitesComputed.get());
+        body.put("sheetsWritten", sheetsWritten.get());
+        if (error != null) body.put("error", error);
+        return body;
+    }
+}
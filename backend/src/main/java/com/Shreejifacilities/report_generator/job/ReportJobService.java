@@ -0,0 +1,144 @@
+package com.Shreejifacilities.report_generator.job;
+
+import com.Shreejifacilities.report_generator.config.UploadBudgetFilter;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.ingest.PunchDatasetStore;
+import com.Shreejifacilities.report_generator.service.ReportDispatcher;
+import com.Shreejifacilities.report_generator.service.ReportWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs report requests off the servlet thread. The upload is spooled to disk while the request is still
+ * open, then parsed, calculated and rendered to a temp file by the job pool; finished jobs and their files
+ * are kept for the retention period so the result can be downloaded, and purged by a sweep every minute.
+ * A queued spool keeps its upload budget charge until the job has parsed it.
+ */
+@Service
+public class ReportJobService {
+
+    @Autowired
+    private PunchDatasetStore punchDatasetStore;
+
+    @Autowired
+    private ReportDispatcher reportDispatcher;
+
+    @Autowired
+    private ExecutorService reportJobExecutor;
+
+    private final long retentionMillis;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+    public ReportJobService(@Value("${report.jobs.retention:1h}") Duration retention) {
+        this.retentionMillis = retention.toMillis();
+    }
+
+    /**
+     * Takes ownership of {@code charge} and closes it once the upload is parsed, or at once if the job is not queued.
+     * @throws RejectedExecutionException when the job queue is full
+     */
+    public ReportJob submit(MultipartFile upload, String reportType, String format, int year, int month, boolean compact,
+                            UploadBudgetFilter.Charge charge) throws IOException {
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("job-upload-", ".upload");
+            upload.transferTo(spool.toFile());
+            ReportJob job = new ReportJob(UUID.randomUUID().toString(), reportType, format, year, month, compact);
+            jobs.put(job.getId(), job);
+            Path queued = spool;
+            try {
+                reportJobExecutor.execute(() -> run(job, queued, charge));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.getId());
+                throw e;
+            }
+            return job;
+        } catch (IOException | RuntimeException e) {
+            if (spool != null) Files.deleteIfExists(spool);
+            charge.close();
+            throw e;
+        }
+    }
+
+    public ReportJob get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void run(ReportJob job, Path upload, UploadBudgetFilter.Charge charge) {
+        Path result = null;
+        try {
+            job.setStatus(ReportJob.Status.PARSING);
+            PunchDataset dataset;
+            try {
+                dataset = punchDatasetStore.ingest(upload, job::setParsedRows);
+            } finally {
+                Files.deleteIfExists(upload);
+                charge.close();
+            }
+            job.setStatus(ReportJob.Status.CALCULATING);
+            ReportWriter report = "excel".equals(job.getFormat())
+                    ? reportDispatcher.excel(dataset, job.getReportType(), job.getYear(), job.getMonth(), job)
+                    : reportDispatcher.json(dataset, job.getReportType(), job.getYear(), job.getMonth(), job.isCompact(), job);
+            job.setStatus(ReportJob.Status.RENDERING);
+            result = Files.createTempFile("job-result-", "excel".equals(job.getFormat()) ? ".xlsx" : ".json");
+            report.writeTo(result);
+            job.complete(result);
+        } catch (Exception e) {
+            if (result != null) result.toFile().delete();
+            job.fail(String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Opens a finished job's result for download. The file is not purged until the returned stream is closed.
+     * Returns null when the result has already been purged.
+     */
+    public InputStream openResult(ReportJob job) throws IOException {
+        if (!job.startDownload()) return null;
+        try {
+            return new FilterInputStream(Files.newInputStream(job.getResult())) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (!closed) job.endDownload();
+                        closed = true;
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            job.endDownload();
+            throw e;
+        }
+    }
+
+    /** Drops jobs finished longer ago than the retention period; a result being downloaded waits for the next run. */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> {
+            if (job.getFinishedAt() == 0 || job.getFinishedAt() > cutoff || !job.purge()) return false;
+            if (job.getResult() != null) job.getResult().toFile().delete();
+            return true;
+        });
+    }
+}
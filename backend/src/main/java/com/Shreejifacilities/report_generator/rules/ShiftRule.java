@@ -0,0 +1,16 @@
+package com.Shreejifacilities.report_generator.rules;
+
+/**
+ * How one employee's punches are turned into shifts: the hour before which a punch still belongs to the
+ * previous day's shift, the window inside which repeated punches count once, and the duration thresholds.
+ */
+public record ShiftRule(int nightShiftCutoffHour, int duplicateWindowMinutes, double fullShiftHours,
+                        double halfShiftMinHours, double overtimeThresholdHours) {
+
+    public ShiftRule {
+        if (nightShiftCutoffHour < 0 || nightShiftCutoffHour > 23) throw new IllegalArgumentException("nightShiftCutoffHour must be between 0 and 23.");
+        if (duplicateWindowMinutes < 0) throw new IllegalArgumentException("duplicateWindowMinutes must not be negative.");
+        if (!(halfShiftMinHours >= 0 && fullShiftHours >= halfShiftMinHours)) throw new IllegalArgumentException("Shift thresholds need 0 <= halfShiftMinHours <= fullShiftHours.");
+        if (!(overtimeThresholdHours >= 0)) throw new IllegalArgumentException("overtimeThresholdHours must not be negative.");
+    }
+}
@@ -0,0 +1,48 @@
+package com.Shreejifacilities.report_generator.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The shift rule file as written by hand: complete defaults, then per-site overrides, each of which can carry
+ * per-employee overrides. Any field left out is inherited from the level above.
+ */
+public class ShiftRuleConfig {
+
+    public Overrides defaults = new Overrides();
+    public List<SiteRules> sites = new ArrayList<>();
+
+    public static class Overrides {
+        public Integer nightShiftCutoffHour;
+        public Integer duplicateWindowMinutes;
+        public Double fullShiftHours;
+        public Double halfShiftMinHours;
+        public Double overtimeThresholdHours;
+
+        ShiftRule applyTo(ShiftRule base) {
+            return new ShiftRule(
+                    nightShiftCutoffHour != null ? nightShiftCutoffHour : base.nightShiftCutoffHour(),
+                    duplicateWindowMinutes != null ? duplicateWindowMinutes : base.duplicateWindowMinutes(),
+                    fullShiftHours != null ? fullShiftHours : base.fullShiftHours(),
+                    halfShiftMinHours != null ? halfShiftMinHours : base.halfShiftMinHours(),
+                    overtimeThresholdHours != null ? overtimeThresholdHours : base.overtimeThresholdHours());
+        }
+
+        ShiftRule toRule() {
+            if (nightShiftCutoffHour == null || duplicateWindowMinutes == null || fullShiftHours == null
+                    || halfShiftMinHours == null || overtimeThresholdHours == null) {
+                throw new IllegalArgumentException("Shift rule defaults must set every field.");
+            }
+            return new ShiftRule(nightShiftCutoffHour, duplicateWindowMinutes, fullShiftHours, halfShiftMinHours, overtimeThresholdHours);
+        }
+    }
+
+    public static class SiteRules extends Overrides {
+        public String site;
+        public List<EmployeeRules> employees = new ArrayList<>();
+    }
+
+    public static class EmployeeRules extends Overrides {
+        public List<String> ids = new ArrayList<>();
+    }
+}
@@ -0,0 +1,155 @@
+package com.Shreejifacilities.report_generator.rules;
+
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Loads the shift rule file and resolves it against each dataset. The file is checked for changes whenever a
+ * dataset is compiled, so edits apply to the next report without a restart; an edit that does not parse or
+ * validate leaves the previous rules active and is reported by {@link #describe()}. Without a rule file the
+ * defaults bundled on the classpath are used.
+ */
+@Component
+public class ShiftRuleRegistry {
+
+    private static final String BUNDLED_RULES = "shift-rules.json";
+    private static final ObjectMapper CONFIG_READER = new ObjectMapper();
+
+    private final Path file;
+    private volatile RuleSet active;
+    private long failedStamp = -1;
+    private String lastError;
+
+    private record RuleSet(long version, long stamp, String source, ShiftRule defaults, Map<String, SiteRuleSet> sites) { }
+
+    private record SiteRuleSet(ShiftRule rule, Map<String, ShiftRule> employees) { }
+
+    public ShiftRuleRegistry(@Value("${report.shift-rules.file:shift-rules.json}") String file) {
+        this.file = file.isBlank() ? null : Paths.get(file);
+        try {
+            this.active = load(1, stamp());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load the shift rules.", e);
+        }
+    }
+
+    /** Changes whenever a new rule file is loaded, so results calculated under older rules can be told apart. */
+    public long version() {
+        return current().version;
+    }
+
+    public ShiftRuleTable compile(PunchDataset dataset) {
+        RuleSet rules = current();
+        Map<ShiftRule, Integer> index = new LinkedHashMap<>();
+        int[] siteRules = new int[dataset.siteCount()];
+        int[][] employeeRules = new int[dataset.siteCount()][];
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            SiteRuleSet siteSet = rules.sites.get(siteKey(dataset.siteName(site)));
+            siteRules[site] = index.computeIfAbsent(siteSet != null ? siteSet.rule : rules.defaults, r -> index.size());
+            if (siteSet == null || siteSet.employees.isEmpty()) continue;
+            int employee = -1;
+            for (int row = dataset.siteStart(site); row < dataset.siteEnd(site); row++) {
+                if (dataset.employee(row) == employee) continue;
+                employee = dataset.employee(row);
+                ShiftRule rule = siteSet.employees.get(dataset.employeeId(employee));
+                if (rule == null) continue;
+                if (employeeRules[site] == null) {
+                    employeeRules[site] = new int[dataset.employeeCount()];
+                    Arrays.fill(employeeRules[site], siteRules[site]);
+                }
+                employeeRules[site][employee] = index.computeIfAbsent(rule, r -> index.size());
+            }
+        }
+        return new ShiftRuleTable(index.keySet().toArray(new ShiftRule[0]), siteRules, employeeRules);
+    }
+
+    public synchronized Map<String, Object> describe() {
+        RuleSet rules = current();
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("source", rules.source);
+        description.put("version", rules.version);
+        description.put("defaults", rules.defaults);
+        description.put("sites", rules.sites);
+        description.put("lastError", lastError);
+        return description;
+    }
+
+    private RuleSet current() {
+        RuleSet rules = active;
+        long stamp = stamp();
+        if (stamp == rules.stamp) return rules;
+        synchronized (this) {
+            rules = active;
+            if (stamp != rules.stamp && stamp != failedStamp) {
+                try {
+                    active = rules = load(rules.version + 1, stamp);
+                    failedStamp = -1;
+                    lastError = null;
+                } catch (IOException | IllegalArgumentException e) {
+                    failedStamp = stamp;
+                    lastError = e.getMessage();
+                }
+            }
+            return rules;
+        }
+    }
+
+    /** Modification time and size of the rule file, or 0 when there is none and the bundled rules apply. */
+    private long stamp() {
+        if (file == null) return 0;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() * 31 + attributes.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private RuleSet load(long version, long stamp) throws IOException {
+        ShiftRuleConfig config;
+        String source;
+        if (stamp != 0) {
+            try (InputStream in = Files.newInputStream(file)) { config = CONFIG_READER.readValue(in, ShiftRuleConfig.class); }
+            source = file.toAbsolutePath().toString();
+        } else {
+            try (InputStream in = ShiftRuleRegistry.class.getClassLoader().getResourceAsStream(BUNDLED_RULES)) {
+                if (in == null) throw new IOException("Missing bundled " + BUNDLED_RULES);
+                config = CONFIG_READER.readValue(in, ShiftRuleConfig.class);
+            }
+            source = "classpath:" + BUNDLED_RULES;
+        }
+        ShiftRule defaults = config.defaults.toRule();
+        Map<String, SiteRuleSet> sites = new HashMap<>();
+        for (ShiftRuleConfig.SiteRules site : config.sites) {
+            if (site.site == null || site.site.isBlank()) throw new IllegalArgumentException("Every site rule needs a site name.");
+            ShiftRule siteRule = site.applyTo(defaults);
+            Map<String, ShiftRule> employees = new HashMap<>();
+            for (ShiftRuleConfig.EmployeeRules group : site.employees) {
+                ShiftRule employeeRule = group.applyTo(siteRule);
+                for (String id : group.ids) employees.put(id.trim(), employeeRule);
+            }
+            if (sites.put(siteKey(site.site), new SiteRuleSet(siteRule, employees)) != null) {
+                throw new IllegalArgumentException("Site listed twice in the shift rules: " + site.site);
+            }
+        }
+        return new RuleSet(version, stamp, source, defaults, sites);
+    }
+
+    private static String siteKey(String site) {
+        return site.trim().toLowerCase(Locale.ROOT);
+    }
+}
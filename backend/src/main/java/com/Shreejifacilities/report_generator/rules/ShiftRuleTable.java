@@ -0,0 +1,23 @@
+package com.Shreejifacilities.report_generator.rules;
+
+/**
+ * Shift rules resolved for one dataset's site and employee codes. Sites without employee overrides share one
+ * rule; the rest get an array indexed by employee code, so a lookup is at most two array reads.
+ */
+public final class ShiftRuleTable {
+
+    private final ShiftRule[] rules;
+    private final int[] siteRules;
+    private final int[][] employeeRules;
+
+    ShiftRuleTable(ShiftRule[] rules, int[] siteRules, int[][] employeeRules) {
+        this.rules = rules;
+        this.siteRules = siteRules;
+        this.employeeRules = employeeRules;
+    }
+
+    public ShiftRule rule(int site, int employee) {
+        int[] byEmployee = employeeRules[site];
+        return rules[byEmployee != null ? byEmployee[employee] : siteRules[site]];
+    }
+}
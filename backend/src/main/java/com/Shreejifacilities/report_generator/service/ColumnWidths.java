@@ -0,0 +1,68 @@
+package com.Shreejifacilities.report_generator.service;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column widths estimated from the text written into each column, in place of autoSizeColumn, which keeps every
+ * row of a streaming sheet and measures each cell with AWT fonts. Characters are weighed by class (narrow
+ * punctuation, digits, lower case, upper case, wide letters) in units of the width of "0", the unit Excel column
+ * widths use, and scaled for bold or larger fonts; this lands within about a character of autoSizeColumn.
+ * Like autoSizeColumn(int), cells of merged regions should not be tracked.
+ */
+final class ColumnWidths {
+
+    private static final String NARROW = " .,:;'\"!|()[]-/ijlfrt";
+    private static final float PADDING = 1.0f, BOLD_SCALE = 1.12f, DEFAULT_FONT_POINTS = 11f;
+    private static final int MAX_WIDTH = 255 * 256;
+
+    private final Workbook workbook;
+    private final float[] widths;
+    private final Map<Short, Float> fontScales = new HashMap<>();
+
+    ColumnWidths(Workbook workbook, int columns) {
+        this.workbook = workbook;
+        this.widths = new float[columns];
+    }
+
+    void track(int column, String text, CellStyle style) {
+        if (text == null || column >= widths.length) return;
+        float width = 0;
+        for (int i = 0; i < text.length(); i++) width += charWidth(text.charAt(i));
+        width *= fontScale(style);
+        if (width > widths[column]) widths[column] = width;
+    }
+
+    /** Numbers as Excel's General format shows them: whole values without a decimal point. */
+    void track(int column, double value, CellStyle style) {
+        track(column, value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value), style);
+    }
+
+    /** Sets the width of every column that had text; untouched columns keep the sheet's default width. */
+    void apply(Sheet sheet) {
+        for (int column = 0; column < widths.length; column++) {
+            if (widths[column] > 0) sheet.setColumnWidth(column, Math.min(MAX_WIDTH, Math.round((widths[column] + PADDING) * 256)));
+        }
+    }
+
+    private float fontScale(CellStyle style) {
+        if (style == null) return 1f;
+        return fontScales.computeIfAbsent(style.getIndex(), index -> {
+            Font font = workbook.getFontAt(style.getFontIndex());
+            return font.getFontHeightInPoints() / DEFAULT_FONT_POINTS * (font.getBold() ? BOLD_SCALE : 1f);
+        });
+    }
+
+    private static float charWidth(char c) {
+        if (c >= '0' && c <= '9') return 1.1f;
+        if (NARROW.indexOf(c) >= 0) return 0.6f;
+        if (c == 'm' || c == 'w' || c == 'M' || c == 'W' || c == '@' || c == '%') return 1.6f;
+        if (Character.isUpperCase(c)) return 1.3f;
+        return 1.05f;
+    }
+}
@@ -1,40 +1,36 @@
 package com.Shreejifacilities.report_generator.service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import com.Shreejifacilities.report_generator.config.OrderedFanOut;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRule;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleRegistry;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleTable;
+import com.Shreejifacilities.report_generator.service.ReportStyles.FontSpec;
+import com.Shreejifacilities.report_generator.service.ReportStyles.StyleSpec;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFFont;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Service
 public class DailyWorkService {
 
-    // --- Business Logic Rules ---
-    private static final double FULL_DUTY_THRESHOLD_HOURS = 8.0;
-    private static final double HALF_DUTY_THRESHOLD_HOURS = 4.0;
-    private static final double OVERTIME_THRESHOLD_HOURS = 9.0;
-    private static final int DEFAULT_NIGHT_SHIFT_CUTOFF = 4;
+    @Autowired
+    private ExecutorService reportComputeExecutor;
 
-    private static class Punch {
-        String site, idNo, name, department;
-        Date punchTime;
-        Punch(String site, String idNo, String name, String department, Date punchTime) { this.site = site; this.idNo = idNo; this.name = name; this.department = department; this.punchTime = punchTime; }
-    }
+    @Autowired
+    private ShiftRuleRegistry shiftRuleRegistry;
 
     private static class EmployeeTotals {
         String idNo, name;
@@ -43,78 +39,92 @@ public class DailyWorkService {
         EmployeeTotals(String idNo, String name) { this.idNo = idNo; this.name = name; }
     }
 
-    public byte[] generateExcelReport(InputStream inputStream, int reportYear, int reportMonth) throws Exception {
-        Map<String, Map<String, Map<String, List<Punch>>>> siteData = readAndGroupPunches(inputStream, reportYear, reportMonth);
-        if (siteData.isEmpty()) {
-            throw new IllegalArgumentException("No valid data found for the specified month and year.");
-        }
-        try (Workbook outputWorkbook = new XSSFWorkbook(); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            for (String siteName : siteData.keySet()) {
-                Map<String, Object> calculatedData = calculateWorkData(siteData.get(siteName));
-                generateSheetFromData(outputWorkbook, siteName, calculatedData);
+    public ReportWriter generateExcelReport(PunchDataset dataset, int reportYear, int reportMonth, ReportProgress progress) {
+        Map<String, Map<String, Object>> allSitesCalculatedData = calculateAllSites(dataset, reportYear, reportMonth, progress);
+        return outputStream -> {
+            SXSSFWorkbook outputWorkbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+            outputWorkbook.setCompressTempFiles(true);
+            try (outputWorkbook) {
+                ReportStyles styles = new ReportStyles(outputWorkbook);
+                for (Map.Entry<String, Map<String, Object>> site : allSitesCalculatedData.entrySet()) {
+                    generateSheetFromData(outputWorkbook, styles, site.getKey(), site.getValue());
+                    progress.sheetWritten();
+                }
+                outputWorkbook.write(outputStream);
+            } finally {
+                outputWorkbook.dispose();
             }
-            outputWorkbook.write(baos);
-            return baos.toByteArray();
-        }
+        };
     }
 
-    public String generateJsonReport(InputStream inputStream, int reportYear, int reportMonth) throws Exception {
-        Map<String, Map<String, Map<String, List<Punch>>>> siteData = readAndGroupPunches(inputStream, reportYear, reportMonth);
-        if (siteData.isEmpty()) {
-            throw new IllegalArgumentException("No valid data found for the specified month and year.");
-        }
+    public ReportWriter generateJsonReport(PunchDataset dataset, int reportYear, int reportMonth, boolean compact, ReportProgress progress) {
+        Map<String, Map<String, Object>> allSitesJsonData = calculateAllSites(dataset, reportYear, reportMonth, progress);
         String reportMonthName = new SimpleDateFormat("MMMM yyyy").format(new GregorianCalendar(reportYear, reportMonth - 1, 1).getTime());
-        Map<String, Object> allSitesJsonData = new LinkedHashMap<>();
-        for (String siteName : siteData.keySet()) {
-            allSitesJsonData.put(siteName, calculateWorkData(siteData.get(siteName)));
-        }
         Map<String, Object> finalJson = new LinkedHashMap<>();
         finalJson.put("reportMonth", reportMonthName.toUpperCase());
         finalJson.put("sites", allSitesJsonData);
-        return formatDataAsJson(finalJson);
+        return ReportJson.writer(finalJson, compact);
+    }
+
+    private Map<String, Map<String, Object>> calculateAllSites(PunchDataset dataset, int reportYear, int reportMonth, ReportProgress progress) {
+        ShiftRuleTable rules = shiftRuleRegistry.compile(dataset);
+        int[] logicalDays = groupPunchesByLogicalDay(dataset, rules, reportYear, reportMonth, progress);
+        List<Callable<Map<String, Object>>> siteTasks = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            int siteCode = site;
+            siteTasks.add(() -> {
+                Map<String, Object> calculatedData = calculateWorkData(dataset, rules, logicalDays, siteCode, reportYear, reportMonth, progress);
+                progress.siteComputed();
+                return calculatedData;
+            });
+        }
+        List<Map<String, Object>> siteResults = OrderedFanOut.invokeAll(reportComputeExecutor, siteTasks);
+        Map<String, Map<String, Object>> allSitesCalculatedData = new LinkedHashMap<>();
+        for (int site = 0; site < siteResults.size(); site++) {
+            if (siteResults.get(site) != null) allSitesCalculatedData.put(dataset.siteName(site), siteResults.get(site));
+        }
+        if (allSitesCalculatedData.isEmpty()) {
+            throw new IllegalArgumentException("No valid data found for the specified month and year.");
+        }
+        return allSitesCalculatedData;
     }
 
-    private Map<String, Object> calculateWorkData(Map<String, Map<String, List<Punch>>> empData) {
+    Map<String, Object> calculateWorkData(PunchDataset dataset, ShiftRuleTable rules, int[] logicalDays, int site, int reportYear, int reportMonth, ReportProgress progress) {
         List<Map<String, Object>> dailyEntries = new ArrayList<>();
-        Map<String, EmployeeTotals> finalTotalsMap = new LinkedHashMap<>();
+        Map<Integer, EmployeeTotals> finalTotalsMap = new LinkedHashMap<>();
         SimpleDateFormat dateTimeFormat = new SimpleDateFormat("dd/MM/yy HH:mm");
-        for (String empKey : empData.keySet()) {
-            for (String date : new TreeSet<>(empData.get(empKey).keySet())) {
-                List<Punch> punchesOnDay = empData.get(empKey).get(date);
-                punchesOnDay.sort(Comparator.comparing(p -> p.punchTime));
-                Punch firstRecord = punchesOnDay.get(0);
-                Map<String, Object> entry = new LinkedHashMap<>();
-                entry.put("site", firstRecord.site); entry.put("idNo", firstRecord.idNo);
-                entry.put("name", firstRecord.name); entry.put("department", firstRecord.department);
-                entry.put("date", date);
-                String dutyStatus = "Missing Punch";
-                double durationInHours = 0, otHours = 0;
-                EmployeeTotals totals = finalTotalsMap.computeIfAbsent(empKey, k -> new EmployeeTotals(firstRecord.idNo, firstRecord.name));
-                if (punchesOnDay.size() >= 2) {
-                    Date firstPunchTime = punchesOnDay.get(0).punchTime;
-                    Date lastPunchTime = punchesOnDay.get(punchesOnDay.size() - 1).punchTime;
-                    entry.put("punchIn", dateTimeFormat.format(firstPunchTime));
-                    entry.put("punchOut", dateTimeFormat.format(lastPunchTime));
-                    durationInHours = (lastPunchTime.getTime() - firstPunchTime.getTime()) / 3_600_000.0;
-                    if (durationInHours >= FULL_DUTY_THRESHOLD_HOURS) {
-                        dutyStatus = "1"; totals.fullDutyDays++;
-                        if (durationInHours > OVERTIME_THRESHOLD_HOURS) otHours = durationInHours - OVERTIME_THRESHOLD_HOURS;
-                    } else if (durationInHours > HALF_DUTY_THRESHOLD_HOURS) {
-                        dutyStatus = "Half Duty"; totals.halfDutyDays++;
-                    } else {
-                        dutyStatus = "No Duty";
-                    }
-                } else {
-                    entry.put("punchIn", dateTimeFormat.format(punchesOnDay.get(0).punchTime));
-                    entry.put("punchOut", "");
-                }
-                totals.totalOvertime += otHours;
-                entry.put("duration", String.format("%.2f", durationInHours));
-                entry.put("dutyStatus", dutyStatus);
-                entry.put("otHours", String.format("%.2f", otHours));
-                dailyEntries.add(entry);
+        dateTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (EmployeeDay day : EmployeeDays.ofSite(dataset, rules, logicalDays, site, progress)) {
+            int employee = day.employee();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("site", dataset.siteName(site)); entry.put("idNo", dataset.employeeId(employee));
+            entry.put("name", dataset.employeeName(employee)); entry.put("department", dataset.department(day.firstRow()));
+            entry.put("date", String.format("%d-%02d-%02d", reportYear, reportMonth, day.day()));
+            entry.put("punchIn", dateTimeFormat.format(new Date(day.firstPunch() * 60_000L)));
+            EmployeeTotals totals = finalTotalsMap.computeIfAbsent(employee, k -> new EmployeeTotals(dataset.employeeId(employee), dataset.employeeName(employee)));
+            double durationInHours = 0, otHours = 0;
+            EmployeeDay.Duty duty = day.duty();
+            if (duty == EmployeeDay.Duty.MISSING) {
+                entry.put("punchOut", "");
+            } else {
+                entry.put("punchOut", dateTimeFormat.format(new Date(day.lastPunch() * 60_000L)));
+                durationInHours = day.hours();
             }
+            String dutyStatus = switch (duty) {
+                case FULL -> "1";
+                case HALF -> "Half Duty";
+                case SHORT -> "No Duty";
+                case MISSING -> "Missing Punch";
+            };
+            if (duty == EmployeeDay.Duty.FULL) { totals.fullDutyDays++; otHours = day.overtimeHours(); }
+            else if (duty == EmployeeDay.Duty.HALF) totals.halfDutyDays++;
+            totals.totalOvertime += otHours;
+            entry.put("duration", String.format("%.2f", durationInHours));
+            entry.put("dutyStatus", dutyStatus);
+            entry.put("otHours", String.format("%.2f", otHours));
+            dailyEntries.add(entry);
         }
+        if (dailyEntries.isEmpty()) return null;
         List<Map<String, Object>> dutySummary = new ArrayList<>();
         List<Map<String, Object>> overtimeSummary = new ArrayList<>();
         double grandTotalDuty = 0, grandTotalOT = 0.0;
@@ -144,145 +154,64 @@ public class DailyWorkService {
         return result;
     }
 
-    private void generateSheetFromData(Workbook workbook, String siteName, Map<String, Object> calculatedData) {
-        Sheet sheet = workbook.createSheet(siteName);
-        CellStyle headerStyle = createHeaderStyle(workbook);
-        CellStyle totalLabelStyle = createTotalLabelStyle(workbook);
+    private static final StyleSpec HEADER = StyleSpec.PLAIN.font(FontSpec.BOLD.color(IndexedColors.WHITE))
+            .fill(IndexedColors.DARK_BLUE).align(HorizontalAlignment.CENTER);
+    private static final StyleSpec TOTAL_LABEL = StyleSpec.PLAIN.font(FontSpec.BOLD);
+
+    void generateSheetFromData(SXSSFWorkbook workbook, ReportStyles styles, String siteName, Map<String, Object> calculatedData) {
+        SXSSFSheet sheet = workbook.createSheet(siteName);
+        ColumnWidths widths = new ColumnWidths(workbook, 10);
+        CellStyle headerStyle = styles.get(HEADER);
+        CellStyle totalLabelStyle = styles.get(TOTAL_LABEL);
         int rowNum = 0;
         String[] headers = {"DeviceName", "IDNo", "Name", "Department", "Date", "Punch In", "Punch Out", "Duration (Hrs)", "Duty Status", "OT (Hrs)"};
         Row headerRow = sheet.createRow(rowNum++);
-        for(int i = 0; i < headers.length; i++) createCell(headerRow, i, headers[i], headerStyle);
+        for(int i = 0; i < headers.length; i++) createCell(widths, headerRow, i, headers[i], headerStyle);
         List<Map<String, Object>> dailyEntries = (List<Map<String, Object>>) calculatedData.get("dailyEntries");
         for (Map<String, Object> entry : dailyEntries) {
             Row dataRow = sheet.createRow(rowNum++);
-            createCell(dataRow, 0, (String) entry.get("site"), null); createCell(dataRow, 1, (String) entry.get("idNo"), null);
-            createCell(dataRow, 2, (String) entry.get("name"), null); createCell(dataRow, 3, (String) entry.get("department"), null);
-            createCell(dataRow, 4, (String) entry.get("date"), null); createCell(dataRow, 5, (String) entry.get("punchIn"), null);
-            createCell(dataRow, 6, (String) entry.get("punchOut"), null); createCell(dataRow, 7, (String) entry.get("duration"), null);
-            createCell(dataRow, 8, (String) entry.get("dutyStatus"), null); createCell(dataRow, 9, (String) entry.get("otHours"), null);
+            createCell(widths, dataRow, 0, (String) entry.get("site"), null); createCell(widths, dataRow, 1, (String) entry.get("idNo"), null);
+            createCell(widths, dataRow, 2, (String) entry.get("name"), null); createCell(widths, dataRow, 3, (String) entry.get("department"), null);
+            createCell(widths, dataRow, 4, (String) entry.get("date"), null); createCell(widths, dataRow, 5, (String) entry.get("punchIn"), null);
+            createCell(widths, dataRow, 6, (String) entry.get("punchOut"), null); createCell(widths, dataRow, 7, (String) entry.get("duration"), null);
+            createCell(widths, dataRow, 8, (String) entry.get("dutyStatus"), null); createCell(widths, dataRow, 9, (String) entry.get("otHours"), null);
         }
         rowNum += 3;
         Row summaryHeader = sheet.createRow(rowNum++);
-        createCell(summaryHeader, 1, "IDNo", headerStyle); createCell(summaryHeader, 2, "Name", headerStyle);
-        createCell(summaryHeader, 3, "Sum of Total Duty", headerStyle);
+        createCell(widths, summaryHeader, 1, "IDNo", headerStyle); createCell(widths, summaryHeader, 2, "Name", headerStyle);
+        createCell(widths, summaryHeader, 3, "Sum of Total Duty", headerStyle);
         List<Map<String, Object>> dutySummary = (List<Map<String, Object>>) calculatedData.get("dutySummary");
         for (Map<String, Object> summary : dutySummary) {
             Row totalRow = sheet.createRow(rowNum++);
-            createCell(totalRow, 1, (String) summary.get("idNo"), null); createCell(totalRow, 2, (String) summary.get("name"), null);
-            createCell(totalRow, 3, (double) summary.get("totalDuty"), null);
+            createCell(widths, totalRow, 1, (String) summary.get("idNo"), null); createCell(widths, totalRow, 2, (String) summary.get("name"), null);
+            createCell(widths, totalRow, 3, (double) summary.get("totalDuty"), null);
         }
         Map<String, Object> grandTotals = (Map<String, Object>) calculatedData.get("grandTotals");
         Row grandTotalRow = sheet.createRow(rowNum++);
-        createCell(grandTotalRow, 2, "Grand Total", totalLabelStyle); createCell(grandTotalRow, 3, (double) grandTotals.get("duty"), totalLabelStyle);
+        createCell(widths, grandTotalRow, 2, "Grand Total", totalLabelStyle); createCell(widths, grandTotalRow, 3, (double) grandTotals.get("duty"), totalLabelStyle);
         rowNum += 2;
         Row otHeader = sheet.createRow(rowNum++);
-        createCell(otHeader, 1, "Name", headerStyle); createCell(otHeader, 2, "Sum of OT (Hrs)", headerStyle);
+        createCell(widths, otHeader, 1, "Name", headerStyle); createCell(widths, otHeader, 2, "Sum of OT (Hrs)", headerStyle);
         List<Map<String, Object>> overtimeSummary = (List<Map<String, Object>>) calculatedData.get("overtimeSummary");
         for (Map<String, Object> ot : overtimeSummary) {
             Row otRow = sheet.createRow(rowNum++);
-            createCell(otRow, 1, (String) ot.get("name"), null); createCell(otRow, 2, (String) ot.get("totalOvertime"), null);
+            createCell(widths, otRow, 1, (String) ot.get("name"), null); createCell(widths, otRow, 2, (String) ot.get("totalOvertime"), null);
         }
         Row otTotalRow = sheet.createRow(rowNum++);
-        createCell(otTotalRow, 1, "Grand Total OT", totalLabelStyle); createCell(otTotalRow, 2, (String) grandTotals.get("overtime"), totalLabelStyle);
-        for(int i=0; i < headers.length; i++) sheet.autoSizeColumn(i);
+        createCell(widths, otTotalRow, 1, "Grand Total OT", totalLabelStyle); createCell(widths, otTotalRow, 2, (String) grandTotals.get("overtime"), totalLabelStyle);
+        widths.apply(sheet);
     }
 
-    private Map<String, Map<String, Map<String, List<Punch>>>> readAndGroupPunches(InputStream inputStream, int reportYear, int reportMonth) throws Exception {
-        List<Punch> allPunches = new ArrayList<>();
-        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            if (!sheet.rowIterator().hasNext()) throw new Exception("Input file is empty.");
-            Map<String, Integer> columnIndex = new HashMap<>();
-            for (Cell cell : sheet.rowIterator().next()) columnIndex.put(cell.getStringCellValue().trim(), cell.getColumnIndex());
-            if (!columnIndex.containsKey("DeviceName") || !columnIndex.containsKey("IDNo") || !columnIndex.containsKey("Name") || !columnIndex.containsKey("PunchTime")) {
-                throw new Exception("A required column is missing in the input file.");
-            }
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue;
-                try {
-                    String site = row.getCell(columnIndex.get("DeviceName")).getStringCellValue().trim();
-                    String name = row.getCell(columnIndex.get("Name")).getStringCellValue().trim();
-                    String department = row.getCell(columnIndex.get("Department"), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue();
-                    String idNo = getCellStringValue(row.getCell(columnIndex.get("IDNo")));
-                    Date punchTime = getCellDateValue(row.getCell(columnIndex.get("PunchTime")));
-                    if (punchTime != null) allPunches.add(new Punch(site, idNo, name, department, punchTime));
-                } catch (Exception e) { /* Skip problematic rows */ }
-            }
-        }
-        if (allPunches.isEmpty()) return Collections.emptyMap();
-        Map<String, Map<String, Map<String, List<Punch>>>> siteData = new TreeMap<>();
-        int calendarMonth = reportMonth - 1;
-        for (Punch punch : allPunches) {
-            Calendar shiftDateCal = Calendar.getInstance();
-            shiftDateCal.setTime(punch.punchTime);
-            if (shiftDateCal.get(Calendar.HOUR_OF_DAY) < DEFAULT_NIGHT_SHIFT_CUTOFF) shiftDateCal.add(Calendar.DATE, -1);
-            if (shiftDateCal.get(Calendar.MONTH) == calendarMonth && shiftDateCal.get(Calendar.YEAR) == reportYear) {
-                String logicalDate = new SimpleDateFormat("yyyy-MM-dd").format(shiftDateCal.getTime());
-                String empKey = punch.idNo + "::" + punch.name;
-                siteData.computeIfAbsent(punch.site, k -> new TreeMap<>())
-                        .computeIfAbsent(empKey, k -> new TreeMap<>())
-                        .computeIfAbsent(logicalDate, k -> new ArrayList<>())
-                        .add(punch);
-            }
-        }
-        return siteData;
-    }
-    
-    private String getCellStringValue(Cell cell) { 
-        if (cell == null) return ""; 
-        return cell.getCellType() == CellType.NUMERIC ? String.valueOf((long) cell.getNumericCellValue()) : cell.getStringCellValue().trim(); 
-    }
-    
-    private Date getCellDateValue(Cell cell) {
-        if (cell == null) return null;
-        if (DateUtil.isCellDateFormatted(cell)) return cell.getDateCellValue();
-        if (cell.getCellType() == CellType.STRING) {
-            try { return new SimpleDateFormat("dd/MM/yy HH:mm").parse(cell.getStringCellValue().trim()); }
-            catch (Exception e) {
-                try { return new SimpleDateFormat("M/d/yy H:mm").parse(cell.getStringCellValue().trim()); }
-                catch (Exception e2) { return null; }
-            }
-        }
-        return null;
-    }
-    
-  
-    private String formatDataAsJson(Map<String, Object> data) {
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-          
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(data);
-        } catch (Exception e) {
-           
-            throw new RuntimeException("Error converting data to JSON", e);
-        }
-    }
-    
-    private void createCell(Row r, int c, String v, CellStyle s) { 
-        Cell cell = r.createCell(c); cell.setCellValue(v); if (s != null) cell.setCellStyle(s); 
-    }
-    
-    private void createCell(Row r, int c, double v, CellStyle s) { 
-        Cell cell = r.createCell(c); cell.setCellValue(v); if (s != null) cell.setCellStyle(s); 
+    int[] groupPunchesByLogicalDay(PunchDataset dataset, ShiftRuleTable rules, int reportYear, int reportMonth, ReportProgress progress) {
+        return LogicalDayGrouping.group(dataset, rules, reportYear, reportMonth, reportComputeExecutor, progress);
     }
+
     
-    private CellStyle createHeaderStyle(Workbook wb) { 
-        XSSFFont f = (XSSFFont) wb.createFont(); 
-        f.setBold(true); 
-        f.setColor(IndexedColors.WHITE.getIndex()); 
-        CellStyle s = wb.createCellStyle(); 
-        s.setFont(f); 
-        s.setFillForegroundColor(IndexedColors.DARK_BLUE.getIndex()); 
-        s.setFillPattern(FillPatternType.SOLID_FOREGROUND); 
-        s.setAlignment(HorizontalAlignment.CENTER); 
-        return s; 
+    private void createCell(ColumnWidths widths, Row r, int c, String v, CellStyle s) { 
+        Cell cell = r.createCell(c); cell.setCellValue(v); if (s != null) cell.setCellStyle(s); widths.track(c, v, s); 
     }
     
-    private CellStyle createTotalLabelStyle(Workbook wb) { 
-        XSSFFont f = (XSSFFont) wb.createFont(); 
-        f.setBold(true); 
-        CellStyle s = wb.createCellStyle(); 
-        s.setFont(f); 
-        return s; 
+    private void createCell(ColumnWidths widths, Row r, int c, double v, CellStyle s) { 
+        Cell cell = r.createCell(c); cell.setCellValue(v); if (s != null) cell.setCellStyle(s); widths.track(c, v, s); 
     }
 }
@@ -0,0 +1,40 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.rules.ShiftRule;
+
+/**
+ * One employee's punches on one logical day of the report month after duplicate cleaning, the record every
+ * report is projected from. {@code rows} counts the raw punches, {@code punches} the ones kept, and
+ * {@code lastPunch} is the last kept punch.
+ */
+record EmployeeDay(int employee, int day, int firstRow, int rows, int punches, long firstPunch, long lastPunch, ShiftRule rule) {
+
+    /** FULL and HALF by the rule's thresholds; SHORT is two or more punches below half a shift, MISSING fewer than two. */
+    enum Duty { FULL, HALF, SHORT, MISSING }
+
+    double hours() {
+        return (lastPunch - firstPunch) / 60.0;
+    }
+
+    int duplicates() {
+        return rows - punches;
+    }
+
+    Duty duty() {
+        return duty(rule.fullShiftHours());
+    }
+
+    /** Classifies against {@code fullShiftHours} in place of the rule's, as the attendance summary does per sheet. */
+    Duty duty(double fullShiftHours) {
+        if (punches < 2) return Duty.MISSING;
+        double hours = hours();
+        if (hours >= fullShiftHours) return Duty.FULL;
+        return hours >= rule.halfShiftMinHours() ? Duty.HALF : Duty.SHORT;
+    }
+
+    /** Hours past the rule's overtime threshold; callers only credit them on full days. */
+    double overtimeHours() {
+        double hours = hours();
+        return hours > rule.overtimeThresholdHours() ? hours - rule.overtimeThresholdHours() : 0;
+    }
+}
@@ -0,0 +1,65 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRule;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a site's grouped punches into {@link EmployeeDay}s, in row order: by employee, then by day. This is the
+ * only place duplicate cleaning happens, so the muster roll, the attendance summary and the daily work report
+ * see the same days.
+ */
+final class EmployeeDays {
+
+    private EmployeeDays() { }
+
+    /** Days with punches in the report month; {@code logicalDays} comes from {@link LogicalDayGrouping}. */
+    static List<EmployeeDay> ofSite(PunchDataset dataset, ShiftRuleTable rules, int[] logicalDays, int site, ReportProgress progress) {
+        List<EmployeeDay> days = new ArrayList<>();
+        Cleaning cleaning = new Cleaning();
+        int employee = -1, duplicates = 0;
+        ShiftRule rule = null;
+        int row = dataset.siteStart(site), siteEnd = dataset.siteEnd(site);
+        while (row < siteEnd) {
+            int day = logicalDays[row];
+            if (day == 0) { row++; continue; }
+            if (dataset.employee(row) != employee) {
+                employee = dataset.employee(row);
+                rule = rules.rule(site, employee);
+            }
+            int firstRow = row;
+            cleaning.start(rule, dataset.minute(row));
+            for (row++; row < siteEnd && dataset.employee(row) == employee && logicalDays[row] == day; row++) cleaning.add(dataset.minute(row));
+            EmployeeDay employeeDay = cleaning.finish(employee, day, firstRow);
+            duplicates += employeeDay.duplicates();
+            days.add(employeeDay);
+        }
+        progress.duplicatesCollapsed(duplicates);
+        return days;
+    }
+
+    /** Duplicate cleaning of one day's punches, fed in time order: a punch within the window of the last kept one is dropped. */
+    static final class Cleaning {
+        private ShiftRule rule;
+        private long firstPunch, lastKept;
+        private int rows, kept;
+
+        void start(ShiftRule rule, long minute) {
+            this.rule = rule;
+            firstPunch = lastKept = minute;
+            rows = kept = 1;
+        }
+
+        void add(long minute) {
+            rows++;
+            if (minute - lastKept > rule.duplicateWindowMinutes()) { lastKept = minute; kept++; }
+        }
+
+        EmployeeDay finish(int employee, int day, int firstRow) {
+            return new EmployeeDay(employee, day, firstRow, rows, kept, firstPunch, lastKept, rule);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.config.OrderedFanOut;
+import com.Shreejifacilities.report_generator.ingest.LogicalDay;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleTable;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Maps every punch row to the day of the report month its shift belongs to, or 0 when the shift falls outside
+ * the month. Rows are time-ordered per employee, so each logical day is a contiguous run. Sites fill disjoint
+ * row ranges and are mapped in parallel on the compute pool. The time taken and the number of punches outside
+ * the month are reported to {@code progress}.
+ */
+final class LogicalDayGrouping {
+
+    private LogicalDayGrouping() {
+    }
+
+    static int[] group(PunchDataset dataset, ShiftRuleTable rules, int reportYear, int reportMonth, ExecutorService executor, ReportProgress progress) {
+        long start = System.nanoTime();
+        int[] logicalDays = new int[dataset.size()];
+        long monthStart = LocalDate.of(reportYear, reportMonth, 1).toEpochDay();
+        int daysInMonth = YearMonth.of(reportYear, reportMonth).lengthOfMonth();
+        List<Callable<Integer>> siteTasks = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            int siteCode = site;
+            siteTasks.add(() -> {
+                int employee = -1, cutoffHour = 0, outsideMonth = 0;
+                for (int row = dataset.siteStart(siteCode); row < dataset.siteEnd(siteCode); row++) {
+                    if (dataset.employee(row) != employee) {
+                        employee = dataset.employee(row);
+                        cutoffHour = rules.rule(siteCode, employee).nightShiftCutoffHour();
+                    }
+                    long day = LogicalDay.epochDay(dataset.minute(row), cutoffHour) - monthStart;
+                    if (day >= 0 && day < daysInMonth) logicalDays[row] = (int) day + 1;
+                    else outsideMonth++;
+                }
+                return outsideMonth;
+            });
+        }
+        int outsideMonth = 0;
+        for (int count : OrderedFanOut.invokeAll(executor, siteTasks)) outsideMonth += count;
+        progress.grouped(System.nanoTime() - start, outsideMonth);
+        return logicalDays;
+    }
+}
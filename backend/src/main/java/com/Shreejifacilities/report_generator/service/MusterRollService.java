@@ -1,296 +1,327 @@
 package com.Shreejifacilities.report_generator.service;
 
+import com.Shreejifacilities.report_generator.config.OrderedFanOut;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleRegistry;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleTable;
+import com.Shreejifacilities.report_generator.service.ReportStyles.FontSpec;
+import com.Shreejifacilities.report_generator.service.ReportStyles.StyleSpec;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
 import java.time.DayOfWeek;
-import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class MusterRollService {
+    @Autowired
+    private ExecutorService reportComputeExecutor;
 
+    @Autowired
+    private ShiftRuleRegistry shiftRuleRegistry;
 
-    private static final double FULL_SHIFT_HOURS = 8.0;
-    private static final double HALF_SHIFT_MIN_HOURS = 5.0;
-    private static final int DEFAULT_NIGHT_SHIFT_CUTOFF = 4;
-    private static final int DUPLICATE_PUNCH_WINDOW_MINUTES = 30;
-    private static final Set<String> KAROL_BAGH_NIGHT_SHIFT_IDS = new HashSet<>(Arrays.asList("88023", "87140"));
-    private static final int KAROL_BAGH_NIGHT_SHIFT_CUTOFF = 16;
+    /** Running muster rolls kept in memory, each with every punch of its month; the least recently used beyond this are dropped. */
+    @Value("${report.muster.running-months:3}")
+    private int runningMonthsKept = 3;
 
-    private static class Punch {
-        String site, empKey;
-        Date punchTime;
-        Punch(String site, String empKey, Date punchTime) { this.site = site; this.empKey = empKey; this.punchTime = punchTime; }
-    }
-
-    public byte[] generateExcelReport(InputStream inputStream, int reportYear, int reportMonth) throws Exception {
-        List<Punch> allPunches = readPunchesFromStream(inputStream);
-        if (allPunches.isEmpty()) {
-            throw new IllegalArgumentException("No valid punch data found in the uploaded file.");
+    private final Map<YearMonth, RunningMusterRoll> runningMonths = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, RunningMusterRoll> eldest) {
+            return size() > runningMonthsKept;
         }
+    });
 
-        Map<String, Map<String, Map<String, List<Date>>>> siteData = groupPunchesByLogicalDay(allPunches, reportYear, reportMonth - 1);
+    public ReportWriter generateExcelReport(PunchDataset dataset, int reportYear, int reportMonth, ReportProgress progress) {
+        return excelWriter(calculateAllSites(dataset, reportYear, reportMonth, progress), reportYear, reportMonth, progress);
+    }
 
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            for (String siteName : new TreeSet<>(siteData.keySet())) {
-                Map<String, Object> calculatedData = calculateMusterRollData(siteData.get(siteName), reportYear, reportMonth);
-                generateMusterRollSheet(workbook, siteName, calculatedData, reportYear, reportMonth - 1);
-            }
-            workbook.write(baos);
-            return baos.toByteArray();
-        }
+    public ReportWriter generateJsonReport(PunchDataset dataset, int reportYear, int reportMonth, boolean compact, ReportProgress progress) {
+        return jsonWriter(calculateAllSites(dataset, reportYear, reportMonth, progress), reportYear, reportMonth, compact);
     }
 
-    public String generateJsonReport(InputStream inputStream, int reportYear, int reportMonth) throws Exception {
-        List<Punch> allPunches = readPunchesFromStream(inputStream);
-        if (allPunches.isEmpty()) {
-            throw new IllegalArgumentException("No valid punch data found in the uploaded file.");
+    /**
+     * Merges a delta export (typically one day of punches) into the running muster rolls and reclassifies only
+     * the employee-days it touched. Each punch goes to the roll of its own logical month when that is the month
+     * posted under or a neighbouring one, which covers shifts crossing a month boundary; punches further away
+     * are ignored, as a full report of the month would ignore them. The month posted under is applied last, so
+     * it is the most recently used. Only the most recently used months are kept; a month that was dropped starts
+     * over from this delta.
+     */
+    public RunningMusterRoll.DeltaResult applyDelta(PunchDataset delta, int reportYear, int reportMonth) {
+        ShiftRuleTable rules = shiftRuleRegistry.compile(delta);
+        YearMonth posted = YearMonth.of(reportYear, reportMonth);
+        Set<YearMonth> touched = RunningMusterRoll.logicalMonths(delta, rules);
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth neighbour : List.of(posted.minusMonths(1), posted.plusMonths(1))) {
+            if (touched.contains(neighbour)) months.add(neighbour);
         }
-
-        Map<String, Map<String, Map<String, List<Date>>>> siteData = groupPunchesByLogicalDay(allPunches, reportYear, reportMonth - 1);
-        String monthName = YearMonth.of(reportYear, reportMonth).getMonth().name();
-
-        Map<String, Object> allSitesCalculatedData = new LinkedHashMap<>();
-        for (String siteName : new TreeSet<>(siteData.keySet())) {
-            Map<String, Object> calculatedData = calculateMusterRollData(siteData.get(siteName), reportYear, reportMonth);
-            allSitesCalculatedData.put(siteName, calculatedData);
+        months.add(posted);
+        int added = 0, recomputed = 0;
+        for (YearMonth month : months) {
+            RunningMusterRoll.DeltaResult result = runningMonths.computeIfAbsent(month, RunningMusterRoll::new).apply(delta, rules);
+            added += result.added();
+            recomputed += result.employeeDaysRecomputed();
         }
+        return new RunningMusterRoll.DeltaResult(delta.size(), added, recomputed);
+    }
 
-        Map<String, Object> finalJson = new LinkedHashMap<>();
-        finalJson.put("reportMonth", String.format("%s %d", monthName, reportYear));
-        finalJson.put("sites", allSitesCalculatedData);
-
-        return formatDataAsJson(finalJson);
+    /** Returns null when no delta has been applied for the month yet. */
+    public ReportWriter generateRunningExcelReport(int reportYear, int reportMonth) {
+        RunningMusterRoll running = runningMonths.get(YearMonth.of(reportYear, reportMonth));
+        return running != null ? excelWriter(running.calculateAllSites(), reportYear, reportMonth, ReportProgress.NONE) : null;
     }
 
-    private List<Punch> readPunchesFromStream(InputStream inputStream) throws Exception {
-        List<Punch> allPunches = new ArrayList<>();
-        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rows = sheet.iterator();
-            if (!rows.hasNext()) { return Collections.emptyList(); }
+    public ReportWriter generateRunningJsonReport(int reportYear, int reportMonth, boolean compact) {
+        RunningMusterRoll running = runningMonths.get(YearMonth.of(reportYear, reportMonth));
+        return running != null ? jsonWriter(running.calculateAllSites(), reportYear, reportMonth, compact) : null;
+    }
 
-            Row header = rows.next();
-            Map<String, Integer> columnIndex = new HashMap<>();
-            for (Cell cell : header) {
-                columnIndex.put(cell.getStringCellValue().trim(), cell.getColumnIndex());
-            }
+    /** Loads one month's punches for a range report, or returns null when there are none. */
+    @FunctionalInterface
+    public interface MonthLoader {
+        PunchDataset load(YearMonth month) throws IOException;
+    }
 
-            if (!columnIndex.containsKey("DeviceName") || !columnIndex.containsKey("IDNo") ||
-                    !columnIndex.containsKey("Name") || !columnIndex.containsKey("PunchTime")) {
-                throw new IllegalArgumentException("A required column (DeviceName, IDNo, Name, or PunchTime) is missing.");
+    /**
+     * Attendance per employee for each month of a range, with totals across it. Months are loaded and
+     * calculated one at a time when the report is written, so only the running totals are held between them.
+     */
+    public ReportWriter generateRangeExcelReport(List<YearMonth> months, MonthLoader loader) {
+        return outputStream -> {
+            RangeAttendance range = calculateRange(months, loader);
+            SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+            workbook.setCompressTempFiles(true);
+            try (workbook) {
+                ReportStyles styles = new ReportStyles(workbook);
+                for (Map.Entry<String, RangeAttendance.Site> site : range.sites().entrySet()) {
+                    generateRangeSheet(workbook, styles, site.getKey(), site.getValue(), range.reportedMonths(), months);
+                }
+                workbook.write(outputStream);
+            } finally {
+                workbook.dispose();
             }
+        };
+    }
 
-            int siteCol = columnIndex.get("DeviceName");
-            int idCol = columnIndex.get("IDNo");
-            int nameCol = columnIndex.get("Name");
-            int punchCol = columnIndex.get("PunchTime");
+    public ReportWriter generateRangeJsonReport(List<YearMonth> months, MonthLoader loader, boolean compact) {
+        return outputStream -> {
+            RangeAttendance range = calculateRange(months, loader);
+            Map<String, Object> finalJson = new LinkedHashMap<>();
+            finalJson.put("from", months.get(0).toString());
+            finalJson.put("to", months.get(months.size() - 1).toString());
+            finalJson.put("months", range.reportedMonths().stream().map(YearMonth::toString).toList());
+            finalJson.put("sites", range.sites());
+            ReportJson.writer(finalJson, compact).writeTo(outputStream);
+        };
+    }
 
-            while (rows.hasNext()) {
-                Row row = rows.next();
-                if (row.getCell(siteCol) == null || row.getCell(siteCol).getCellType() == CellType.BLANK) continue;
+    private RangeAttendance calculateRange(List<YearMonth> months, MonthLoader loader) throws IOException {
+        RangeAttendance range = new RangeAttendance(months);
+        for (YearMonth month : months) {
+            PunchDataset dataset = loader.load(month);
+            if (dataset != null) range.add(month, calculateAllSites(dataset, month.getYear(), month.getMonthValue(), ReportProgress.NONE));
+        }
+        return range;
+    }
 
-                String site = row.getCell(siteCol).getStringCellValue().trim();
-                String empId = "";
-                Cell idCell = row.getCell(idCol);
-                if (idCell.getCellType() == CellType.NUMERIC) {
-                    empId = String.valueOf((long) idCell.getNumericCellValue());
-                } else {
-                    empId = idCell.getStringCellValue().trim();
+    private ReportWriter excelWriter(Map<String, MusterRollSite> allSitesCalculatedData, int reportYear, int reportMonth, ReportProgress progress) {
+        return outputStream -> {
+            SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+            workbook.setCompressTempFiles(true);
+            try (workbook) {
+                ReportStyles styles = new ReportStyles(workbook);
+                for (Map.Entry<String, MusterRollSite> site : allSitesCalculatedData.entrySet()) {
+                    generateMusterRollSheet(workbook, styles, site.getKey(), site.getValue(), reportYear, reportMonth - 1);
+                    progress.sheetWritten();
                 }
-                String name = row.getCell(nameCol).getStringCellValue().trim();
-                String empKey = empId + "::" + name;
+                workbook.write(outputStream);
+            } finally {
+                workbook.dispose();
+            }
+        };
+    }
 
-                Date punchTime = null;
-                Cell punchCell = row.getCell(punchCol);
-                if (punchCell != null) {
-                    try {
-                        if (punchCell.getCellType() == CellType.STRING) {
-                            punchTime = new SimpleDateFormat("M/d/yy H:mm").parse(punchCell.getStringCellValue().trim());
-                        } else if (DateUtil.isCellDateFormatted(punchCell)) {
-                            punchTime = punchCell.getDateCellValue();
-                        }
-                    } catch (Exception e) { /* Ignore */ }
-                }
+    private ReportWriter jsonWriter(Map<String, MusterRollSite> allSitesCalculatedData, int reportYear, int reportMonth, boolean compact) {
+        String monthName = YearMonth.of(reportYear, reportMonth).getMonth().name();
 
-                if (punchTime != null) {
-                    allPunches.add(new Punch(site, empKey, punchTime));
-                }
-            }
+        Map<String, Object> finalJson = new LinkedHashMap<>();
+        finalJson.put("reportMonth", String.format("%s %d", monthName, reportYear));
+        finalJson.put("sites", allSitesCalculatedData);
+
+        return ReportJson.writer(finalJson, compact);
+    }
+
+    private Map<String, MusterRollSite> calculateAllSites(PunchDataset dataset, int reportYear, int reportMonth, ReportProgress progress) {
+        ShiftRuleTable rules = shiftRuleRegistry.compile(dataset);
+        int[] logicalDays = groupPunchesByLogicalDay(dataset, rules, reportYear, reportMonth, progress);
+        List<Callable<MusterRollSite>> siteTasks = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            int siteCode = site;
+            siteTasks.add(() -> {
+                MusterRollSite calculatedData = calculateMusterRollData(dataset, rules, logicalDays, siteCode, reportYear, reportMonth, progress);
+                progress.siteComputed();
+                return calculatedData;
+            });
+        }
+        List<MusterRollSite> siteResults = OrderedFanOut.invokeAll(reportComputeExecutor, siteTasks);
+        Map<String, MusterRollSite> allSitesCalculatedData = new LinkedHashMap<>();
+        for (int site = 0; site < siteResults.size(); site++) {
+            if (siteResults.get(site) != null) allSitesCalculatedData.put(dataset.siteName(site), siteResults.get(site));
         }
-        return allPunches;
+        return allSitesCalculatedData;
     }
 
-    private Map<String, Map<String, Map<String, List<Date>>>> groupPunchesByLogicalDay(List<Punch> allPunches, int reportYear, int reportCalendarMonth) {
-        Map<String, Map<String, Map<String, List<Date>>>> siteData = new HashMap<>();
-        for (Punch punch : allPunches) {
-            Calendar shiftDateCal = Calendar.getInstance();
-            shiftDateCal.setTime(punch.punchTime);
-            String empId = punch.empKey.split("::")[0];
-            if ("Karol Bagh".equalsIgnoreCase(punch.site) && KAROL_BAGH_NIGHT_SHIFT_IDS.contains(empId)) {
-                if (shiftDateCal.get(Calendar.HOUR_OF_DAY) < KAROL_BAGH_NIGHT_SHIFT_CUTOFF) shiftDateCal.add(Calendar.DATE, -1);
-            } else {
-                if (shiftDateCal.get(Calendar.HOUR_OF_DAY) < DEFAULT_NIGHT_SHIFT_CUTOFF) shiftDateCal.add(Calendar.DATE, -1);
-            }
-            if (shiftDateCal.get(Calendar.MONTH) != reportCalendarMonth || shiftDateCal.get(Calendar.YEAR) != reportYear) continue;
-            String punchDate = new SimpleDateFormat("yyyy-MM-dd").format(shiftDateCal.getTime());
-            siteData.computeIfAbsent(punch.site, k -> new TreeMap<>())
-                    .computeIfAbsent(punch.empKey, k -> new TreeMap<>())
-                    .computeIfAbsent(punchDate, k -> new ArrayList<>())
-                    .add(punch.punchTime);
+    /** See {@link LogicalDayGrouping}; an upload without punches is rejected here. */
+    int[] groupPunchesByLogicalDay(PunchDataset dataset, ShiftRuleTable rules, int reportYear, int reportMonth, ReportProgress progress) {
+        if (dataset.size() == 0) {
+            throw new IllegalArgumentException("No valid punch data found in the uploaded file.");
         }
-        return siteData;
+        return LogicalDayGrouping.group(dataset, rules, reportYear, reportMonth, reportComputeExecutor, progress);
     }
 
-    private Map<String, Object> calculateMusterRollData(Map<String, Map<String, List<Date>>> empData, int year, int month) {
-        List<Map<String, Object>> employeeResults = new ArrayList<>();
-        double siteTotalAttendance = 0;
-        int siteTotalHalfDays = 0;
-        int siteTotalMissing = 0;
-        YearMonth yearMonthObject = YearMonth.of(year, month);
-        int daysInMonth = yearMonthObject.lengthOfMonth();
-        Set<Integer> weeklyOffDays = getSundaysForMonth(year, month);
-        for (String empKey : new TreeSet<>(empData.keySet())) {
-            Map<String, Object> employeeData = new LinkedHashMap<>();
-            String[] parts = empKey.split("::", 2);
-            employeeData.put("empId", parts[0]);
-            employeeData.put("name", parts[1]);
-            double empTotalAttendance = 0;
-            List<String> dailyStatusList = new ArrayList<>();
-            Map<String, List<Date>> datePunches = empData.get(empKey);
-            for (int day = 1; day <= daysInMonth; day++) {
-                String dateStr = String.format("%d-%02d-%02d", year, month, day);
-                String status = "A";
-                if (datePunches.containsKey(dateStr)) {
-                    List<Date> punchesOnDay = new ArrayList<>(datePunches.get(dateStr));
-                    punchesOnDay.sort(Comparator.naturalOrder());
-                    List<Date> cleaned = new ArrayList<>();
-                    if (!punchesOnDay.isEmpty()) {
-                        cleaned.add(punchesOnDay.get(0));
-                        for (int i = 1; i < punchesOnDay.size(); i++) {
-                            long diff = punchesOnDay.get(i).getTime() - cleaned.get(cleaned.size() - 1).getTime();
-                            if (diff > DUPLICATE_PUNCH_WINDOW_MINUTES * 60 * 1000) cleaned.add(punchesOnDay.get(i));
-                        }
-                    }
-                    if (cleaned.size() < 2) {
-                        status = "M"; siteTotalMissing++;
-                    } else {
-                        double duration = (cleaned.get(cleaned.size() - 1).getTime() - cleaned.get(0).getTime()) / 3_600_000.0;
-                        if (duration >= FULL_SHIFT_HOURS) {
-                            status = "P"; empTotalAttendance += 1.0;
-                        } else if (duration >= HALF_SHIFT_MIN_HOURS) {
-                            status = "H"; empTotalAttendance += 0.5; siteTotalHalfDays++;
-                        } else {
-                            status = "M"; siteTotalMissing++;
-                        }
-                    }
-                }
-                if (weeklyOffDays.contains(day) && "A".equals(status)) status = "WO";
-                dailyStatusList.add(status);
+    /** P, H or M for one logical day; a day short of half a shift counts as a missing punch. */
+    static int dayStatus(EmployeeDay day) {
+        return switch (day.duty()) {
+            case FULL -> MusterRollSite.PRESENT;
+            case HALF -> MusterRollSite.HALF;
+            default -> MusterRollSite.MISSING;
+        };
+    }
+
+    /** Null when no employee of the site punched in the month. */
+    MusterRollSite calculateMusterRollData(PunchDataset dataset, ShiftRuleTable rules, int[] logicalDays, int site, int year, int month, ReportProgress progress) {
+        MusterRollSite musterRoll = new MusterRollSite(YearMonth.of(year, month));
+        List<EmployeeDay> days = EmployeeDays.ofSite(dataset, rules, logicalDays, site, progress);
+        for (int i = 0; i < days.size(); ) {
+            int employee = days.get(i).employee();
+            long row = 0;
+            for (; i < days.size() && days.get(i).employee() == employee; i++) {
+                row = MusterRollSite.withStatus(row, days.get(i).day(), dayStatus(days.get(i)));
             }
-            employeeData.put("totalAttendance", empTotalAttendance);
-            employeeData.put("dailyStatus", dailyStatusList);
-            employeeResults.add(employeeData);
-            siteTotalAttendance += empTotalAttendance;
+            musterRoll.add(dataset.employeeId(employee), dataset.employeeName(employee), row);
         }
-        Map<String, Object> summary = new LinkedHashMap<>();
-        summary.put("totalSiteAttendance", siteTotalAttendance);
-        summary.put("totalHalfDays", siteTotalHalfDays);
-        summary.put("totalMissingPunches", siteTotalMissing);
-        Map<String, Object> result = new LinkedHashMap<>();
-        result.put("employees", employeeResults);
-        result.put("summary", summary);
-        return result;
+        return musterRoll.size() > 0 ? musterRoll : null;
     }
 
-    private void generateMusterRollSheet(Workbook workbook, String siteName, Map<String, Object> calculatedData, int year, int month) {
+    private static final StyleSpec GRID = StyleSpec.PLAIN.borders(ReportStyles.BOX, IndexedColors.GREY_50_PERCENT);
+    private static final StyleSpec COMPANY_NAME = StyleSpec.PLAIN.font(FontSpec.BOLD.height(16)).align(HorizontalAlignment.CENTER);
+    private static final StyleSpec CONTACT_INFO = StyleSpec.PLAIN.align(HorizontalAlignment.CENTER);
+    private static final StyleSpec TITLE = StyleSpec.PLAIN.font(FontSpec.BOLD.height(12)).align(HorizontalAlignment.CENTER);
+    private static final StyleSpec HEADER = GRID.font(FontSpec.BOLD).align(HorizontalAlignment.CENTER).valign(VerticalAlignment.CENTER);
+    private static final StyleSpec HEADER_WEEKLY_OFF = HEADER.fill(IndexedColors.GREY_25_PERCENT).wrap();
+    private static final StyleSpec STATUS = GRID.align(HorizontalAlignment.CENTER);
+    private static final Map<String, StyleSpec> STATUS_STYLES = Map.of(
+            "P", STATUS.font(FontSpec.BOLD).fill(IndexedColors.LIGHT_GREEN),
+            "H", STATUS.font(FontSpec.BOLD).fill(IndexedColors.LIGHT_ORANGE),
+            "A", STATUS.font(FontSpec.BOLD).fill(IndexedColors.ROSE),
+            "M", STATUS.font(FontSpec.BOLD).fill(IndexedColors.SKY_BLUE),
+            "WO", STATUS.fill(IndexedColors.GREY_25_PERCENT));
+    private static final StyleSpec NAME = GRID.align(HorizontalAlignment.LEFT);
+    private static final StyleSpec TOTAL = GRID.font(FontSpec.BOLD);
+    private static final StyleSpec FOOTER = StyleSpec.PLAIN.font(FontSpec.BOLD).align(HorizontalAlignment.RIGHT);
+    private static final StyleSpec NOTE = StyleSpec.PLAIN.font(FontSpec.ITALIC);
+
+    void generateMusterRollSheet(Workbook workbook, ReportStyles styles, String siteName, MusterRollSite musterRoll, int year, int month) {
         Sheet sheet = workbook.createSheet(siteName);
-        Map<String, CellStyle> styles = createStyles(workbook);
+        Map<String, CellStyle> statusStyles = new HashMap<>();
+        STATUS_STYLES.forEach((status, spec) -> statusStyles.put(status, styles.get(spec)));
+        CellStyle headerStyle = styles.get(HEADER), gridStyle = styles.get(GRID);
         int rowNum = createCompanyHeader(sheet, styles, siteName, year, month);
         YearMonth yearMonthObject = YearMonth.of(year, month + 1);
         int daysInMonth = yearMonthObject.lengthOfMonth();
         Set<Integer> weeklyOffDays = getSundaysForMonth(year, month + 1);
         Row headerRow = sheet.createRow(rowNum++);
         headerRow.setHeightInPoints(25);
-        createCell(headerRow, 0, "Sr. No.", styles.get("header"));
-        createCell(headerRow, 1, "NAME", styles.get("header"));
+        createCell(headerRow, 0, "Sr. No.", headerStyle);
+        createCell(headerRow, 1, "NAME", headerStyle);
         sheet.setColumnWidth(1, 6000);
         for (int day = 1; day <= daysInMonth; day++) {
-            CellStyle style = weeklyOffDays.contains(day) ? styles.get("header_woff") : styles.get("header");
+            CellStyle style = weeklyOffDays.contains(day) ? styles.get(HEADER_WEEKLY_OFF) : headerStyle;
             createCell(headerRow, day + 1, String.valueOf(day), style);
             sheet.setColumnWidth(day + 1, 1000);
         }
-        createCell(headerRow, daysInMonth + 2, "Total Attd.", styles.get("header"));
-        List<Map<String, Object>> employeeResults = (List<Map<String, Object>>) calculatedData.get("employees");
-        int srNo = 1;
-        for (Map<String, Object> empData : employeeResults) {
+        createCell(headerRow, daysInMonth + 2, "Total Attd.", headerStyle);
+        for (int employee = 0; employee < musterRoll.size(); employee++) {
             Row empRow = sheet.createRow(rowNum++);
-            createCell(empRow, 0, srNo++, styles.get("default"));
-            createCell(empRow, 1, (String) empData.get("name"), styles.get("default_left_align"));
-            List<String> dailyStatus = (List<String>) empData.get("dailyStatus");
-            for (int day = 0; day < dailyStatus.size(); day++) {
-                createCell(empRow, day + 2, dailyStatus.get(day), styles.get("status_" + dailyStatus.get(day)));
+            createCell(empRow, 0, employee + 1, gridStyle);
+            createCell(empRow, 1, musterRoll.name(employee), styles.get(NAME));
+            for (int day = 1; day <= daysInMonth; day++) {
+                String code = musterRoll.code(employee, day);
+                createCell(empRow, day + 1, code, statusStyles.get(code));
             }
-            createCell(empRow, daysInMonth + 2, (Double) empData.get("totalAttendance"), styles.get("bold"));
+            createCell(empRow, daysInMonth + 2, musterRoll.attendance(employee), styles.get(TOTAL));
         }
-        Map<String, Object> summary = (Map<String, Object>) calculatedData.get("summary");
-        createFooter(sheet, rowNum, daysInMonth, (Double) summary.get("totalSiteAttendance"),
-                (Integer) summary.get("totalHalfDays"), (Integer) summary.get("totalMissingPunches"), styles);
+        createFooter(sheet, rowNum, daysInMonth, musterRoll.totalAttendance(),
+                musterRoll.total(MusterRollSite.HALF), musterRoll.total(MusterRollSite.MISSING), styles);
     }
 
-    // All other private helper methods (createStyles, formatJson, etc.) go below.
-    // They are unchanged from the previous version.
-    private String formatDataAsJson(Map<String, Object> data) {
-        StringBuilder sb = new StringBuilder();
-        formatMap(data, sb, 0);
-        return sb.toString();
-    }
-    private void formatMap(Map<String, Object> map, StringBuilder sb, int indent) {
-        sb.append("{\n");
-        Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, Object> entry = iterator.next();
-            addIndent(sb, indent + 1).append("\"").append(entry.getKey()).append("\": ");
-            formatValue(entry.getValue(), sb, indent + 1);
-            if (iterator.hasNext()) sb.append(",");
-            sb.append("\n");
-        }
-        addIndent(sb, indent).append("}");
-    }
-    private void formatList(List<?> list, StringBuilder sb, int indent) {
-        sb.append("[\n");
-        Iterator<?> iterator = list.iterator();
-        while (iterator.hasNext()) {
-            addIndent(sb, indent + 1);
-            formatValue(iterator.next(), sb, indent + 1);
-            if (iterator.hasNext()) sb.append(",");
-            sb.append("\n");
+    private static final DateTimeFormatter RANGE_MONTH = DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
+    private static final DateTimeFormatter RANGE_TITLE_MONTH = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ENGLISH);
+
+    /** {@code range} is the requested months, for the title; only the reported ones get a column. */
+    void generateRangeSheet(Workbook workbook, ReportStyles styles, String siteName, RangeAttendance.Site site, List<YearMonth> reported, List<YearMonth> range) {
+        Sheet sheet = workbook.createSheet(siteName);
+        CellStyle headerStyle = styles.get(HEADER), gridStyle = styles.get(GRID), totalStyle = styles.get(TOTAL);
+        int lastCol = reported.size() + 5;
+        createCell(sheet.createRow(0), 0, "Shree Ji Facility Services", styles.get(COMPANY_NAME));
+        sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, lastCol));
+        createCell(sheet.createRow(1), 0, "Email: contact@shreefacilities.in | Website: shreefacilities.in | Mobile: 9560411801", styles.get(CONTACT_INFO));
+        sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, lastCol));
+        createCell(sheet.createRow(2), 0, "Attendance Report for Haldiram's - " + range.get(0).format(RANGE_TITLE_MONTH)
+                + " to " + range.get(range.size() - 1).format(RANGE_TITLE_MONTH), styles.get(TITLE));
+        sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, lastCol));
+        createCell(sheet.createRow(4), 0, "ATTENDANCE TOTALS - " + siteName.toUpperCase(), styles.get(TITLE));
+        sheet.addMergedRegion(new CellRangeAddress(4, 4, 0, lastCol));
+        int rowNum = 6;
+        Row headerRow = sheet.createRow(rowNum++);
+        headerRow.setHeightInPoints(25);
+        createCell(headerRow, 0, "Sr. No.", headerStyle);
+        createCell(headerRow, 1, "Emp ID", headerStyle);
+        createCell(headerRow, 2, "NAME", headerStyle);
+        sheet.setColumnWidth(1, 3000);
+        sheet.setColumnWidth(2, 6000);
+        for (int month = 0; month < reported.size(); month++) {
+            createCell(headerRow, month + 3, reported.get(month).format(RANGE_MONTH), headerStyle);
+            sheet.setColumnWidth(month + 3, 3000);
         }
-        addIndent(sb, indent).append("]");
-    }
-    private void formatValue(Object value, StringBuilder sb, int indent) {
-        if (value instanceof Map) {
-            formatMap((Map<String, Object>) value, sb, indent);
-        } else if (value instanceof List) {
-            formatList((List<?>) value, sb, indent);
-        } else if (value instanceof String) {
-            sb.append("\"").append(value).append("\"");
-        } else {
-            sb.append(value);
+        createCell(headerRow, lastCol - 2, "Total Attd.", headerStyle);
+        createCell(headerRow, lastCol - 1, "Half Days", headerStyle);
+        createCell(headerRow, lastCol, "Missing", headerStyle);
+        List<RangeAttendance.Employee> employees = site.employees();
+        for (int i = 0; i < employees.size(); i++) {
+            RangeAttendance.Employee employee = employees.get(i);
+            Row empRow = sheet.createRow(rowNum++);
+            createCell(empRow, 0, i + 1, gridStyle);
+            createCell(empRow, 1, employee.empId, gridStyle);
+            createCell(empRow, 2, employee.name, styles.get(NAME));
+            for (int month = 0; month < reported.size(); month++) {
+                createCell(empRow, month + 3, employee.attendance(reported.get(month)), gridStyle);
+            }
+            createCell(empRow, lastCol - 2, employee.totalAttendance(), totalStyle);
+            createCell(empRow, lastCol - 1, employee.halfDays, gridStyle);
+            createCell(empRow, lastCol, employee.missingPunches, gridStyle);
         }
+        rowNum += 2;
+        int mergeStartCol = Math.max(0, lastCol - 5);
+        Row footerRow = sheet.createRow(rowNum++);
+        createCell(footerRow, mergeStartCol, "Total Site Attendance: " + site.totalAttendance(), styles.get(FOOTER));
+        sheet.addMergedRegion(new CellRangeAddress(footerRow.getRowNum(), footerRow.getRowNum(), mergeStartCol, lastCol));
+        Row footerRow2 = sheet.createRow(rowNum++);
+        createCell(footerRow2, mergeStartCol, "Total Half Days: " + site.totalHalfDays() + " | Total Missing: " + site.totalMissingPunches(), styles.get(FOOTER));
+        sheet.addMergedRegion(new CellRangeAddress(footerRow2.getRowNum(), footerRow2.getRowNum(), mergeStartCol, lastCol));
     }
-    private StringBuilder addIndent(StringBuilder sb, int indent) {
-        for (int i = 0; i < indent; i++) sb.append("  ");
-        return sb;
-    }
-    private Set<Integer> getSundaysForMonth(int year, int month) {
+
+    static Set<Integer> getSundaysForMonth(int year, int month) {
         Set<Integer> sundays = new HashSet<>();
         YearMonth yearMonth = YearMonth.of(year, month);
         int daysInMonth = yearMonth.lengthOfMonth();
@@ -299,68 +330,34 @@ public class MusterRollService {
         }
         return sundays;
     }
-    private int createCompanyHeader(Sheet sheet, Map<String, CellStyle> styles, String siteName, int year, int month) {
+    private int createCompanyHeader(Sheet sheet, ReportStyles styles, String siteName, int year, int month) {
         String monthYear = new SimpleDateFormat("MMMM yyyy").format(new GregorianCalendar(year, month, 1).getTime());
         int lastCol = YearMonth.of(year, month + 1).lengthOfMonth() + 2;
-        createCell(sheet.createRow(0), 0, "Shree Ji Facility Services", styles.get("company_name"));
+        createCell(sheet.createRow(0), 0, "Shree Ji Facility Services", styles.get(COMPANY_NAME));
         sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, lastCol));
-        createCell(sheet.createRow(1), 0, "Email: contact@shreefacilities.in | Website: shreefacilities.in | Mobile: 9560411801", styles.get("contact_info"));
+        createCell(sheet.createRow(1), 0, "Email: contact@shreefacilities.in | Website: shreefacilities.in | Mobile: 9560411801", styles.get(CONTACT_INFO));
         sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, lastCol));
-        createCell(sheet.createRow(2), 0, "Monthly Attendance Report for Haldiram's - " + monthYear, styles.get("report_title"));
+        createCell(sheet.createRow(2), 0, "Monthly Attendance Report for Haldiram's - " + monthYear, styles.get(TITLE));
         sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, lastCol));
-        createCell(sheet.createRow(4), 0, "MUSTER ROLL SHEET - " + siteName.toUpperCase(), styles.get("sheet_title"));
+        createCell(sheet.createRow(4), 0, "MUSTER ROLL SHEET - " + siteName.toUpperCase(), styles.get(TITLE));
         sheet.addMergedRegion(new CellRangeAddress(4, 4, 0, lastCol));
         return 6;
     }
-    private void createFooter(Sheet sheet, int rowNum, int daysInMonth, double totalAtt, int totalHalf, int totalMissing, Map<String, CellStyle> styles) {
+    private void createFooter(Sheet sheet, int rowNum, int daysInMonth, double totalAtt, int totalHalf, int totalMissing, ReportStyles styles) {
         rowNum += 2;
         int lastCol = daysInMonth + 2;
         int mergeStartCol = Math.max(0, lastCol - 5);
         Row footerRow = sheet.createRow(rowNum++);
-        createCell(footerRow, mergeStartCol, "Total Site Attendance: " + totalAtt, styles.get("bold_right"));
+        createCell(footerRow, mergeStartCol, "Total Site Attendance: " + totalAtt, styles.get(FOOTER));
         sheet.addMergedRegion(new CellRangeAddress(footerRow.getRowNum(), footerRow.getRowNum(), mergeStartCol, lastCol));
         Row footerRow2 = sheet.createRow(rowNum++);
-        createCell(footerRow2, mergeStartCol, "Total Half Days: " + totalHalf + " | Total Missing: " + totalMissing, styles.get("bold_right"));
+        createCell(footerRow2, mergeStartCol, "Total Half Days: " + totalHalf + " | Total Missing: " + totalMissing, styles.get(FOOTER));
         sheet.addMergedRegion(new CellRangeAddress(footerRow2.getRowNum(), footerRow2.getRowNum(), mergeStartCol, lastCol));
         rowNum++;
         Row noteRow = sheet.createRow(rowNum++);
-        createCell(noteRow, 0, "Note: 'M' (Missing Punch) and 'A' (Absent) days are not included in 'Total Attd.'. 'WO' stands for Weekly Off.", styles.get("note"));
+        createCell(noteRow, 0, "Note: 'M' (Missing Punch) and 'A' (Absent) days are not included in 'Total Attd.'. 'WO' stands for Weekly Off.", styles.get(NOTE));
         sheet.addMergedRegion(new CellRangeAddress(noteRow.getRowNum(), noteRow.getRowNum(), 0, lastCol));
     }
-    private Map<String, CellStyle> createStyles(Workbook wb) {
-        Map<String, CellStyle> styles = new HashMap<>();
-        Font headerFont = wb.createFont(); headerFont.setBold(true);
-        Font companyFont = wb.createFont(); companyFont.setBold(true); companyFont.setFontHeightInPoints((short)16);
-        Font titleFont = wb.createFont(); titleFont.setBold(true); titleFont.setFontHeightInPoints((short)12);
-        Font boldFont = wb.createFont(); boldFont.setBold(true);
-        Font noteFont = wb.createFont(); noteFont.setItalic(true);
-        java.util.function.Consumer<CellStyle> addBorders = s -> {
-            s.setBorderBottom(BorderStyle.THIN); s.setBorderTop(BorderStyle.THIN);
-            s.setBorderLeft(BorderStyle.THIN); s.setBorderRight(BorderStyle.THIN);
-            s.setBottomBorderColor(IndexedColors.GREY_50_PERCENT.getIndex());
-            s.setTopBorderColor(IndexedColors.GREY_50_PERCENT.getIndex());
-            s.setLeftBorderColor(IndexedColors.GREY_50_PERCENT.getIndex());
-            s.setRightBorderColor(IndexedColors.GREY_50_PERCENT.getIndex());
-        };
-        CellStyle style;
-        style = wb.createCellStyle(); style.setFont(companyFont); style.setAlignment(HorizontalAlignment.CENTER); styles.put("company_name", style);
-        style = wb.createCellStyle(); style.setAlignment(HorizontalAlignment.CENTER); styles.put("contact_info", style);
-        style = wb.createCellStyle(); style.setFont(titleFont); style.setAlignment(HorizontalAlignment.CENTER); styles.put("report_title", style);
-        style = wb.createCellStyle(); style.setFont(titleFont); style.setAlignment(HorizontalAlignment.CENTER); styles.put("sheet_title", style);
-        style = wb.createCellStyle(); style.setFont(headerFont); style.setAlignment(HorizontalAlignment.CENTER); style.setVerticalAlignment(VerticalAlignment.CENTER); addBorders.accept(style); styles.put("header", style);
-        style = wb.createCellStyle(); style.setFont(headerFont); style.setAlignment(HorizontalAlignment.CENTER); style.setVerticalAlignment(VerticalAlignment.CENTER); style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex()); style.setFillPattern(FillPatternType.SOLID_FOREGROUND); style.setWrapText(true); addBorders.accept(style); styles.put("header_woff", style);
-        style = wb.createCellStyle(); style.setAlignment(HorizontalAlignment.CENTER); style.setFont(boldFont); style.setFillForegroundColor(IndexedColors.LIGHT_GREEN.getIndex()); style.setFillPattern(FillPatternType.SOLID_FOREGROUND); addBorders.accept(style); styles.put("status_P", style);
-        style = wb.createCellStyle(); style.setAlignment(HorizontalAlignment.CENTER); style.setFont(boldFont); style.setFillForegroundColor(IndexedColors.LIGHT_ORANGE.getIndex()); style.setFillPattern(FillPatternType.SOLID_FOREGROUND); addBorders.accept(style); styles.put("status_H", style);
-        style = wb.createCellStyle(); style.setAlignment(HorizontalAlignment.CENTER); style.setFont(boldFont); style.setFillForegroundColor(IndexedColors.ROSE.getIndex()); style.setFillPattern(FillPatternType.SOLID_FOREGROUND); addBorders.accept(style); styles.put("status_A", style);
-        style = wb.createCellStyle(); style.setAlignment(HorizontalAlignment.CENTER); style.setFont(boldFont); style.setFillForegroundColor(IndexedColors.SKY_BLUE.getIndex()); style.setFillPattern(FillPatternType.SOLID_FOREGROUND); addBorders.accept(style); styles.put("status_M", style);
-        style = wb.createCellStyle(); style.setAlignment(HorizontalAlignment.CENTER); style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex()); style.setFillPattern(FillPatternType.SOLID_FOREGROUND); addBorders.accept(style); styles.put("status_WO", style);
-        style = wb.createCellStyle(); addBorders.accept(style); styles.put("default", style);
-        style = wb.createCellStyle(); addBorders.accept(style); style.setAlignment(HorizontalAlignment.LEFT); styles.put("default_left_align", style);
-        style = wb.createCellStyle(); style.setFont(boldFont); addBorders.accept(style); styles.put("bold", style);
-        style = wb.createCellStyle(); style.setFont(boldFont); style.setAlignment(HorizontalAlignment.RIGHT); styles.put("bold_right", style);
-        style = wb.createCellStyle(); style.setFont(noteFont); styles.put("note", style);
-        return styles;
-    }
     private void createCell(Row row, int col, String value, CellStyle style) { Cell cell = row.createCell(col); cell.setCellValue(value); if (style != null) cell.setCellStyle(style); }
     private void createCell(Row row, int col, double value, CellStyle style) { Cell cell = row.createCell(col); cell.setCellValue(value); if (style != null) cell.setCellStyle(style); }
     private void createCell(Row row, int col, int value, CellStyle style) { Cell cell = row.createCell(col); cell.setCellValue(value); if (style != null) cell.setCellStyle(style); }
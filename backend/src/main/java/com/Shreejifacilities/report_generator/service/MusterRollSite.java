@@ -0,0 +1,122 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One site's muster roll as a status matrix. An employee's month is a single long holding two bits per day
+ * (A, P, H or M, day 1 in the lowest bits), so the roll for 10k employees across a year is under 1 MB and the
+ * P/H/M totals are popcounts over masked rows. Absent Sundays are shown as WO; that is derived from the month
+ * when the roll is rendered, not stored.
+ */
+final class MusterRollSite implements ReportJson.Writable {
+
+    static final int ABSENT = 0, PRESENT = 1, HALF = 2, MISSING = 3;
+    private static final String[] CODES = {"A", "P", "H", "M"};
+    /** The low bit of every two-bit day. */
+    private static final long LOW_BITS = 0x5555_5555_5555_5555L;
+
+    private final int daysInMonth;
+    /** Bit {@code day} is set for each Sunday. */
+    private final long sundays;
+    private final List<String> empIds = new ArrayList<>(), names = new ArrayList<>();
+    private long[] rows = new long[16];
+
+    MusterRollSite(YearMonth month) {
+        this.daysInMonth = month.lengthOfMonth();
+        long sundays = 0;
+        for (int day = 1; day <= daysInMonth; day++) {
+            if (month.atDay(day).getDayOfWeek() == DayOfWeek.SUNDAY) sundays |= 1L << day;
+        }
+        this.sundays = sundays;
+    }
+
+    /** {@code row} with {@code day} (1-based) set to {@code status}. */
+    static long withStatus(long row, int day, int status) {
+        int shift = 2 * (day - 1);
+        return row & ~(3L << shift) | (long) status << shift;
+    }
+
+    static int status(long row, int day) {
+        return (int) (row >>> 2 * (day - 1)) & 3;
+    }
+
+    /** Days of {@code row} with {@code status}, which must be PRESENT, HALF or MISSING. */
+    static int count(long row, int status) {
+        long low = row & LOW_BITS, high = row >>> 1 & LOW_BITS;
+        return Long.bitCount(switch (status) {
+            case PRESENT -> low & ~high;
+            case HALF -> high & ~low;
+            default -> low & high;
+        });
+    }
+
+    static double attendance(long row) {
+        return count(row, PRESENT) + count(row, HALF) * 0.5;
+    }
+
+    void add(String empId, String name, long row) {
+        if (empIds.size() == rows.length) rows = Arrays.copyOf(rows, rows.length * 2);
+        rows[empIds.size()] = row;
+        empIds.add(empId);
+        names.add(name);
+    }
+
+    int size() { return empIds.size(); }
+
+    String empId(int employee) { return empIds.get(employee); }
+
+    String name(int employee) { return names.get(employee); }
+
+    /** Days of the employee's month with {@code status}, which must be PRESENT, HALF or MISSING. */
+    int days(int employee, int status) { return count(rows[employee], status); }
+
+    double attendance(int employee) { return attendance(rows[employee]); }
+
+    /** The sheet code for one employee-day: A, P, H, M, or WO for an absent Sunday. */
+    String code(int employee, int day) {
+        int status = status(rows[employee], day);
+        return status == ABSENT && (sundays & 1L << day) != 0 ? "WO" : CODES[status];
+    }
+
+    double totalAttendance() {
+        double total = 0;
+        for (int employee = 0; employee < size(); employee++) total += attendance(rows[employee]);
+        return total;
+    }
+
+    int total(int status) {
+        int total = 0;
+        for (int employee = 0; employee < size(); employee++) total += count(rows[employee], status);
+        return total;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart("employees");
+        for (int employee = 0; employee < size(); employee++) {
+            g.writeStartObject();
+            g.writeStringField("empId", empIds.get(employee));
+            g.writeStringField("name", names.get(employee));
+            g.writeNumberField("totalAttendance", attendance(employee));
+            g.writeArrayFieldStart("dailyStatus");
+            for (int day = 1; day <= daysInMonth; day++) g.writeString(code(employee, day));
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+        g.writeObjectFieldStart("summary");
+        g.writeNumberField("totalSiteAttendance", totalAttendance());
+        g.writeNumberField("totalHalfDays", total(HALF));
+        g.writeNumberField("totalMissingPunches", total(MISSING));
+        g.writeEndObject();
+        g.writeEndObject();
+    }
+}
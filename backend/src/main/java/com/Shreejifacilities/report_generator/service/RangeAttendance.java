@@ -0,0 +1,120 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attendance totals per site and employee across a range of months, accumulated one month's muster roll at a
+ * time so only the totals outlive each month. Employees are matched by ID within a site and listed in the
+ * order they first appear; months with nothing archived are left out.
+ */
+final class RangeAttendance {
+
+    private final List<YearMonth> months;
+    private final boolean[] reported;
+    private final Map<String, Site> sites = new LinkedHashMap<>();
+
+    RangeAttendance(List<YearMonth> months) {
+        this.months = List.copyOf(months);
+        this.reported = new boolean[months.size()];
+    }
+
+    void add(YearMonth month, Map<String, MusterRollSite> musterRolls) {
+        int index = months.indexOf(month);
+        reported[index] = true;
+        for (Map.Entry<String, MusterRollSite> musterRoll : musterRolls.entrySet()) {
+            sites.computeIfAbsent(musterRoll.getKey(), s -> new Site()).add(index, musterRoll.getValue());
+        }
+    }
+
+    List<YearMonth> reportedMonths() {
+        List<YearMonth> reportedMonths = new ArrayList<>();
+        for (int i = 0; i < months.size(); i++) {
+            if (reported[i]) reportedMonths.add(months.get(i));
+        }
+        return reportedMonths;
+    }
+
+    Map<String, Site> sites() { return sites; }
+
+    final class Site implements ReportJson.Writable {
+
+        private final Map<String, Employee> employees = new LinkedHashMap<>();
+
+        private void add(int month, MusterRollSite musterRoll) {
+            for (int i = 0; i < musterRoll.size(); i++) {
+                Employee employee = employees.computeIfAbsent(musterRoll.empId(i), Employee::new);
+                employee.name = musterRoll.name(i);
+                employee.attendance[month] += musterRoll.attendance(i);
+                employee.halfDays += musterRoll.days(i, MusterRollSite.HALF);
+                employee.missingPunches += musterRoll.days(i, MusterRollSite.MISSING);
+            }
+        }
+
+        List<Employee> employees() { return List.copyOf(employees.values()); }
+
+        double totalAttendance() {
+            double total = 0;
+            for (Employee employee : employees.values()) total += employee.totalAttendance();
+            return total;
+        }
+
+        int totalHalfDays() { return employees.values().stream().mapToInt(e -> e.halfDays).sum(); }
+
+        int totalMissingPunches() { return employees.values().stream().mapToInt(e -> e.missingPunches).sum(); }
+
+        @Override
+        public void writeJson(JsonGenerator g) throws IOException {
+            g.writeStartObject();
+            g.writeArrayFieldStart("employees");
+            for (Employee employee : employees.values()) {
+                g.writeStartObject();
+                g.writeStringField("empId", employee.empId);
+                g.writeStringField("name", employee.name);
+                g.writeArrayFieldStart("monthlyAttendance");
+                for (int month = 0; month < months.size(); month++) {
+                    if (reported[month]) g.writeNumber(employee.attendance[month]);
+                }
+                g.writeEndArray();
+                g.writeNumberField("totalAttendance", employee.totalAttendance());
+                g.writeNumberField("halfDays", employee.halfDays);
+                g.writeNumberField("missingPunches", employee.missingPunches);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeObjectFieldStart("summary");
+            g.writeNumberField("totalSiteAttendance", totalAttendance());
+            g.writeNumberField("totalHalfDays", totalHalfDays());
+            g.writeNumberField("totalMissingPunches", totalMissingPunches());
+            g.writeEndObject();
+            g.writeEndObject();
+        }
+    }
+
+    final class Employee {
+
+        final String empId;
+        String name;
+        /** Indexed like the requested months; months that were not reported stay zero and are skipped. */
+        final double[] attendance = new double[months.size()];
+        int halfDays, missingPunches;
+
+        private Employee(String empId) {
+            this.empId = empId;
+        }
+
+        double attendance(YearMonth month) { return attendance[months.indexOf(month)]; }
+
+        double totalAttendance() {
+            double total = 0;
+            for (double monthly : attendance) total += monthly;
+            return total;
+        }
+    }
+}
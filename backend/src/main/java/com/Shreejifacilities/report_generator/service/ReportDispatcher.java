@@ -0,0 +1,120 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.config.ComputeBulkhead;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/** Maps a report type name from the API to its service, going through the result cache and recording stage metrics on a miss. */
+@Service
+public class ReportDispatcher {
+
+    public static final Set<String> REPORT_TYPES = Set.of("muster-roll", "attendance-summary", "daily-work");
+
+    @Autowired
+    private MusterRollService musterRollService;
+
+    @Autowired
+    private AttendanceSummaryService attendanceSummaryService;
+
+    @Autowired
+    private DailyWorkService dailyWorkService;
+
+    @Autowired
+    private ReportResultCache reportResultCache;
+
+    @Autowired
+    private ShiftRuleRegistry shiftRuleRegistry;
+
+    @Autowired
+    private ReportMetrics reportMetrics;
+
+    @Autowired
+    private ComputeBulkhead computeBulkhead;
+
+    public static String fileName(String reportType, int year, int month, String extension) {
+        String prefix = switch (reportType) {
+            case "muster-roll" -> "Muster_Roll_Report";
+            case "attendance-summary" -> "Attendance_Summary_Report";
+            default -> "Daily_Work_Report";
+        };
+        return String.format("%s_%d_%d.%s", prefix, month, year, extension);
+    }
+
+    /** Reports calculated under earlier shift rules must not be served once the rule file changes. */
+    private String cacheId(PunchDataset dataset) {
+        return dataset.getId() + "@rules-" + shiftRuleRegistry.version();
+    }
+
+    /**
+     * Calculates, and later renders, while holding a compute permit; cache hits need neither. The report is
+     * rendered into a spool file and copied to the client after the permit is released, so a slow reader never
+     * holds one; a report written to a file is rendered straight into it.
+     */
+    private ReportWriter bounded(Callable<ReportWriter> calculation) throws Exception {
+        ReportWriter writer;
+        try (ComputeBulkhead.Permit permit = computeBulkhead.enter()) {
+            writer = calculation.call();
+        }
+        return new ReportWriter() {
+            @Override
+            public void writeTo(Path file) throws IOException {
+                try (ComputeBulkhead.Permit permit = computeBulkhead.enter();
+                     OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                    writer.writeTo(out);
+                }
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                Path spool = Files.createTempFile("report-", ".spool");
+                try {
+                    writeTo(spool);
+                    Files.copy(spool, outputStream);
+                } finally {
+                    Files.deleteIfExists(spool);
+                }
+            }
+        };
+    }
+
+    public ReportWriter excel(PunchDataset dataset, String reportType, int year, int month, ReportProgress progress) throws Exception {
+        return reportResultCache.get(ReportResultCache.key(cacheId(dataset), reportType, year, month, "xlsx"), () -> bounded(() -> reportMetrics.record(reportType, "xlsx", progress, stages -> switch (reportType) {
+            case "muster-roll" -> musterRollService.generateExcelReport(dataset, year, month, stages);
+            case "attendance-summary" -> attendanceSummaryService.generateExcelReport(dataset, year, month, stages);
+            default -> dailyWorkService.generateExcelReport(dataset, year, month, stages);
+        })));
+    }
+
+    public ReportWriter json(PunchDataset dataset, String reportType, int year, int month, boolean compact, ReportProgress progress) throws Exception {
+        String format = compact ? "compact.json" : "json";
+        return reportResultCache.get(ReportResultCache.key(cacheId(dataset), reportType, year, month, format), () -> bounded(() -> reportMetrics.record(reportType, "json", progress, stages -> switch (reportType) {
+            case "muster-roll" -> musterRollService.generateJsonReport(dataset, year, month, compact, stages);
+            case "attendance-summary" -> attendanceSummaryService.generateJsonReport(dataset, year, month, compact, stages);
+            default -> dailyWorkService.generateJsonReport(dataset, year, month, compact, stages);
+        })));
+    }
+
+    /**
+     * Attendance totals across archived months. Not cached; the months are loaded and calculated while the
+     * report is rendered, under the render permit.
+     */
+    public ReportWriter rangeExcel(List<YearMonth> months, MusterRollService.MonthLoader loader) throws Exception {
+        return bounded(() -> musterRollService.generateRangeExcelReport(months, loader));
+    }
+
+    public ReportWriter rangeJson(List<YearMonth> months, MusterRollService.MonthLoader loader, boolean compact) throws Exception {
+        return bounded(() -> musterRollService.generateRangeJsonReport(months, loader, compact));
+    }
+}
@@ -0,0 +1,66 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams report results to the response as JSON tokens, so the document is never assembled as a String
+ * and every key and value is escaped by the generator.
+ */
+final class ReportJson {
+
+    private static final JsonFactory FACTORY = JsonFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
+
+    /** Implemented by typed result objects that write their own fields. */
+    interface Writable {
+        void writeJson(JsonGenerator generator) throws IOException;
+    }
+
+    private ReportJson() {
+    }
+
+    static ReportWriter writer(Map<String, Object> document, boolean compact) {
+        return outputStream -> {
+            try (JsonGenerator generator = FACTORY.createGenerator(outputStream)) {
+                if (!compact) generator.useDefaultPrettyPrinter();
+                writeValue(generator, document);
+            }
+        };
+    }
+
+    static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof Map<?, ?> map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof List<?> list) {
+            generator.writeStartArray();
+            for (Object item : list) writeValue(generator, item);
+            generator.writeEndArray();
+        } else if (value instanceof Writable writable) {
+            writable.writeJson(generator);
+        } else if (value instanceof String s) {
+            generator.writeString(s);
+        } else if (value instanceof Integer i) {
+            generator.writeNumber(i);
+        } else if (value instanceof Long l) {
+            generator.writeNumber(l);
+        } else if (value instanceof Double d) {
+            generator.writeNumber(d);
+        } else if (value instanceof Boolean b) {
+            generator.writeBoolean(b);
+        } else if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.Shreejifacilities.report_generator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage timers and counters of report generation, tagged by report type and output format. Grouping time is
+ * reported by the services through {@link ReportProgress}; calculation is the rest of the time until the writer
+ * is returned, and rendering is the time the writer takes to stream the report. Cache hits are not recorded.
+ */
+@Component
+public class ReportMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    interface Calculation {
+        ReportWriter calculate(ReportProgress progress) throws Exception;
+    }
+
+    ReportWriter record(String reportType, String format, ReportProgress progress, Calculation calculation) throws Exception {
+        Stages stages = new Stages(progress);
+        long start = System.nanoTime();
+        ReportWriter writer = calculation.calculate(stages);
+        long calculated = System.nanoTime() - start;
+        timer(reportType, format, "group").record(stages.groupNanos.get(), TimeUnit.NANOSECONDS);
+        timer(reportType, format, "calculate").record(calculated - stages.groupNanos.get(), TimeUnit.NANOSECONDS);
+        counter("report.punches.outside.month", reportType, format).increment(stages.outsideMonth.get());
+        counter("report.punches.duplicates", reportType, format).increment(stages.duplicates.get());
+        counter("report.sites", reportType, format).increment(stages.sites.get());
+        return outputStream -> {
+            long renderStart = System.nanoTime();
+            CountingOutputStream counting = new CountingOutputStream(outputStream);
+            writer.writeTo(counting);
+            timer(reportType, format, "render").record(System.nanoTime() - renderStart, TimeUnit.NANOSECONDS);
+            counter("report.bytes.written", reportType, format).increment(counting.count);
+        };
+    }
+
+    private Timer timer(String reportType, String format, String stage) {
+        return Timer.builder("report.stage.duration").tag("stage", stage).tag("report", reportType).tag("format", format).register(meterRegistry);
+    }
+
+    private Counter counter(String name, String reportType, String format) {
+        return Counter.builder(name).tag("report", reportType).tag("format", format).register(meterRegistry);
+    }
+
+    /** Tallies one report's progress while passing every call on to the caller's listener. */
+    private static class Stages implements ReportProgress {
+        private final ReportProgress delegate;
+        final AtomicLong groupNanos = new AtomicLong();
+        final AtomicInteger outsideMonth = new AtomicInteger(), duplicates = new AtomicInteger(), sites = new AtomicInteger();
+
+        Stages(ReportProgress delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void grouped(long nanos, int punchesOutsideMonth) {
+            groupNanos.addAndGet(nanos);
+            outsideMonth.addAndGet(punchesOutsideMonth);
+            delegate.grouped(nanos, punchesOutsideMonth);
+        }
+
+        @Override
+        public void siteComputed() {
+            sites.incrementAndGet();
+            delegate.siteComputed();
+        }
+
+        @Override
+        public void duplicatesCollapsed(int punches) {
+            duplicates.addAndGet(punches);
+            delegate.duplicatesCollapsed(punches);
+        }
+
+        @Override
+        public void sheetWritten() {
+            delegate.sheetWritten();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.Shreejifacilities.report_generator.service;
+
+/** Receives per-stage progress while a report is calculated and rendered; calls may come from pool threads. */
+public interface ReportProgress {
+
+    ReportProgress NONE = new ReportProgress() { };
+
+    /** Punches were mapped to logical days in {@code nanos}; {@code outsideMonth} of them fell outside the report month. */
+    default void grouped(long nanos, int outsideMonth) { }
+
+    default void siteComputed() { }
+
+    /** Punches dropped by duplicate cleaning while one site was calculated. */
+    default void duplicatesCollapsed(int punches) { }
+
+    default void sheetWritten() { }
+}
@@ -0,0 +1,200 @@
+package com.Shreejifacilities.report_generator.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Rendered reports keyed by dataset hash, report type, month and output format, so a repeat download of the
+ * same muster roll is served from memory instead of being recalculated and re-rendered. Content is kept in the
+ * fixed-size blocks it was copied into while streaming, and entries are weighed by those blocks; the least
+ * recently used ones are evicted once the byte budget is exceeded, and entries older than the TTL are dropped
+ * on lookup and swept out whenever a report is stored. The {@link #stats()} figures are also published as meters.
+ */
+@Component
+public class ReportResultCache implements MeterBinder {
+
+    /** Cached content is copied into blocks of this size while it streams. */
+    private static final int BLOCK_SIZE = 8 << 10;
+
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes, hits, misses, evictions;
+
+    private record Entry(List<byte[]> blocks, long length, long createdAt) {
+        void writeTo(OutputStream outputStream) throws IOException {
+            long remaining = length;
+            for (byte[] block : blocks) {
+                int n = (int) Math.min(block.length, remaining);
+                outputStream.write(block, 0, n);
+                remaining -= n;
+            }
+        }
+
+        /** Memory held, which is what the byte budget is charged. */
+        long weight() {
+            return (long) blocks.size() * BLOCK_SIZE;
+        }
+    }
+
+    public ReportResultCache(@Value("${report.cache.max-bytes:67108864}") long maxBytes,
+                             @Value("${report.cache.ttl:30m}") Duration ttl) {
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public static String key(String datasetId, String reportType, int year, int month, String format) {
+        return datasetId + '/' + reportType + '/' + year + '-' + month + '.' + format;
+    }
+
+    /**
+     * Returns a writer for the cached bytes, or one that runs {@code producer}'s writer and keeps a copy of
+     * everything it streams so the next request for {@code key} is a hit.
+     */
+    public ReportWriter get(String key, Callable<ReportWriter> producer) throws Exception {
+        Entry cached = lookup(key);
+        if (cached != null) return cached::writeTo;
+        ReportWriter writer = producer.call();
+        return new ReportWriter() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                TeeOutputStream tee = new TeeOutputStream(outputStream, maxBytes);
+                writer.writeTo(tee);
+                if (tee.blocks != null) store(key, new Entry(tee.blocks, tee.length, System.nanoTime()));
+            }
+
+            /** Lets {@code writer} render into the file itself, then fills the entry from it. */
+            @Override
+            public void writeTo(Path file) throws IOException {
+                writer.writeTo(file);
+                long length = Files.size(file);
+                if (length > maxBytes) return;
+                List<byte[]> blocks = new ArrayList<>();
+                try (InputStream in = Files.newInputStream(file)) {
+                    for (long read = 0; read < length; read += BLOCK_SIZE) {
+                        byte[] block = new byte[BLOCK_SIZE];
+                        in.readNBytes(block, 0, (int) Math.min(BLOCK_SIZE, length - read));
+                        blocks.add(block);
+                    }
+                }
+                store(key, new Entry(blocks, length, System.nanoTime()));
+            }
+        };
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("report.cache.hits", this, cache -> cache.stat("hits")).register(registry);
+        FunctionCounter.builder("report.cache.misses", this, cache -> cache.stat("misses")).register(registry);
+        FunctionCounter.builder("report.cache.evictions", this, cache -> cache.stat("evictions")).register(registry);
+        Gauge.builder("report.cache.entries", this, cache -> cache.stat("entries")).register(registry);
+        Gauge.builder("report.cache.bytes", this, cache -> cache.stat("bytes")).baseUnit("bytes").register(registry);
+    }
+
+    private double stat(String name) {
+        return ((Number) stats().get(name)).doubleValue();
+    }
+
+    private synchronized Entry lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry, System.nanoTime())) {
+            entries.remove(key);
+            totalBytes -= entry.weight();
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) { misses++; return null; }
+        hits++;
+        return entry;
+    }
+
+    private synchronized void store(String key, Entry entry) {
+        if (entry.weight() > maxBytes) return;
+        Entry previous = entries.put(key, entry);
+        if (previous != null) totalBytes -= previous.weight();
+        totalBytes += entry.weight();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext()) {
+            Entry next = eldest.next();
+            if (next != entry && (totalBytes > maxBytes || isExpired(next, entry.createdAt))) {
+                totalBytes -= next.weight();
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt > ttlNanos;
+    }
+
+    /**
+     * Copies the response into fixed-size blocks while it streams, so the copy is never regrown or copied again
+     * on the way into the cache, and gives up on it once it outgrows the cache.
+     */
+    private static class TeeOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long limit;
+        List<byte[]> blocks = new ArrayList<>();
+        long length;
+
+        TeeOutputStream(OutputStream out, long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (blocks == null) return;
+            if (length + len > limit) { blocks = null; return; }
+            while (len > 0) {
+                int used = (int) (length % BLOCK_SIZE);
+                if (used == 0) blocks.add(new byte[BLOCK_SIZE]);
+                int n = Math.min(len, BLOCK_SIZE - used);
+                System.arraycopy(b, off, blocks.get(blocks.size() - 1), used, n);
+                off += n;
+                len -= n;
+                length += n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.Shreejifacilities.report_generator.service;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The cell styles and fonts of one generated workbook. Renderers describe a look as a {@link StyleSpec} and
+ * get back the workbook's single CellStyle for it, so each distinct style and font is written to styles.xml
+ * once, however many site or shift sheets use it. Not thread-safe; a workbook is rendered by one thread.
+ */
+final class ReportStyles {
+
+    static final int TOP = 1, BOTTOM = 2, LEFT = 4, RIGHT = 8, BOX = TOP | BOTTOM | LEFT | RIGHT;
+
+    /** Marks a height or colour that is left at POI's default. */
+    private static final short UNSET = -1;
+
+    private final Workbook workbook;
+    private final Map<StyleSpec, CellStyle> styles = new HashMap<>();
+    private final Map<FontSpec, Font> fonts = new HashMap<>();
+
+    ReportStyles(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    record FontSpec(boolean bold, boolean italic, short heightInPoints, short color) {
+
+        static final FontSpec BOLD = new FontSpec(true, false, UNSET, UNSET);
+        static final FontSpec ITALIC = new FontSpec(false, true, UNSET, UNSET);
+
+        FontSpec height(int points) { return new FontSpec(bold, italic, (short) points, color); }
+
+        FontSpec color(IndexedColors indexed) { return new FontSpec(bold, italic, heightInPoints, indexed.getIndex()); }
+    }
+
+    /** Thin borders on the {@code borders} sides; null alignments and fonts, and unset colours, keep the defaults. */
+    record StyleSpec(FontSpec font, HorizontalAlignment alignment, VerticalAlignment verticalAlignment,
+                     short fill, int borders, short borderColor, boolean wrapText) {
+
+        static final StyleSpec PLAIN = new StyleSpec(null, null, null, UNSET, 0, UNSET, false);
+
+        StyleSpec font(FontSpec spec) { return new StyleSpec(spec, alignment, verticalAlignment, fill, borders, borderColor, wrapText); }
+
+        StyleSpec align(HorizontalAlignment horizontal) { return new StyleSpec(font, horizontal, verticalAlignment, fill, borders, borderColor, wrapText); }
+
+        StyleSpec valign(VerticalAlignment vertical) { return new StyleSpec(font, alignment, vertical, fill, borders, borderColor, wrapText); }
+
+        StyleSpec fill(IndexedColors color) { return new StyleSpec(font, alignment, verticalAlignment, color.getIndex(), borders, borderColor, wrapText); }
+
+        StyleSpec borders(int sides) { return new StyleSpec(font, alignment, verticalAlignment, fill, sides, borderColor, wrapText); }
+
+        StyleSpec borders(int sides, IndexedColors color) { return new StyleSpec(font, alignment, verticalAlignment, fill, sides, color.getIndex(), wrapText); }
+
+        StyleSpec wrap() { return new StyleSpec(font, alignment, verticalAlignment, fill, borders, borderColor, true); }
+    }
+
+    CellStyle get(StyleSpec spec) {
+        CellStyle style = styles.get(spec);
+        if (style == null) {
+            style = create(spec);
+            styles.put(spec, style);
+        }
+        return style;
+    }
+
+    private CellStyle create(StyleSpec spec) {
+        CellStyle style = workbook.createCellStyle();
+        if (spec.font() != null) style.setFont(font(spec.font()));
+        if (spec.alignment() != null) style.setAlignment(spec.alignment());
+        if (spec.verticalAlignment() != null) style.setVerticalAlignment(spec.verticalAlignment());
+        if (spec.fill() != UNSET) {
+            style.setFillForegroundColor(spec.fill());
+            style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        }
+        if ((spec.borders() & TOP) != 0) style.setBorderTop(BorderStyle.THIN);
+        if ((spec.borders() & BOTTOM) != 0) style.setBorderBottom(BorderStyle.THIN);
+        if ((spec.borders() & LEFT) != 0) style.setBorderLeft(BorderStyle.THIN);
+        if ((spec.borders() & RIGHT) != 0) style.setBorderRight(BorderStyle.THIN);
+        if (spec.borderColor() != UNSET) {
+            if ((spec.borders() & TOP) != 0) style.setTopBorderColor(spec.borderColor());
+            if ((spec.borders() & BOTTOM) != 0) style.setBottomBorderColor(spec.borderColor());
+            if ((spec.borders() & LEFT) != 0) style.setLeftBorderColor(spec.borderColor());
+            if ((spec.borders() & RIGHT) != 0) style.setRightBorderColor(spec.borderColor());
+        }
+        if (spec.wrapText()) style.setWrapText(true);
+        return style;
+    }
+
+    private Font font(FontSpec spec) {
+        Font font = fonts.get(spec);
+        if (font == null) {
+            font = workbook.createFont();
+            font.setBold(spec.bold());
+            font.setItalic(spec.italic());
+            if (spec.heightInPoints() != UNSET) font.setFontHeightInPoints(spec.heightInPoints());
+            if (spec.color() != UNSET) font.setColor(spec.color());
+            fonts.put(spec, font);
+        }
+        return font;
+    }
+}
@@ -0,0 +1,23 @@
+package com.Shreejifacilities.report_generator.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A fully calculated report that renders itself straight onto an output stream, so the controller can
+ * hand it to the response without buffering the whole file first.
+ */
+@FunctionalInterface
+public interface ReportWriter {
+    void writeTo(OutputStream outputStream) throws IOException;
+
+    /** Renders into {@code file}, replacing its content. Writers that spool to disk anyway render straight into it. */
+    default void writeTo(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            writeTo(out);
+        }
+    }
+}
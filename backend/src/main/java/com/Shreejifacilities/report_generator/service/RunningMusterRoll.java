@@ -0,0 +1,127 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.ingest.LogicalDay;
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRule;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleTable;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Muster roll state for one month that grows as daily exports arrive. Every employee-day keeps its punch
+ * set, and its current P/H/M status sits in the employee's {@link MusterRollSite} row, so a delta only re-runs
+ * duplicate cleaning and classification for the cells it adds punches to; rendering reads the stored rows. Punches repeated by an overlapping export
+ * are ignored, so re-sending a day is harmless. Reclassified days use the shift rules in force for the delta.
+ * A delta is applied to the month it was posted under and to either neighbouring month its punches fall in by
+ * logical day (see {@link #logicalMonths}), so a night shift's punch-out on the 1st reaches the previous month's
+ * roll whichever of the two months it was posted under.
+ */
+public class RunningMusterRoll {
+
+    public record DeltaResult(int punches, int added, int employeeDaysRecomputed) { }
+
+    private final YearMonth month;
+    private final long monthStart;
+    private final int daysInMonth;
+    private final TreeMap<String, TreeMap<String, EmployeeMonth>> sites = new TreeMap<>();
+
+    private static class EmployeeMonth {
+        final String empId, name;
+        final TreeSet<Long>[] punches;
+        long statuses;
+        ShiftRule rule;
+
+        @SuppressWarnings("unchecked")
+        EmployeeMonth(String empId, String name, int daysInMonth) {
+            this.empId = empId;
+            this.name = name;
+            this.punches = new TreeSet[daysInMonth + 1];
+        }
+    }
+
+    RunningMusterRoll(YearMonth month) {
+        this.month = month;
+        this.monthStart = month.atDay(1).toEpochDay();
+        this.daysInMonth = month.lengthOfMonth();
+    }
+
+    /** The months the delta's punches belong to by logical day; each one's roll takes only its own punches. */
+    static Set<YearMonth> logicalMonths(PunchDataset delta, ShiftRuleTable rules) {
+        Set<YearMonth> months = new TreeSet<>();
+        for (int site = 0; site < delta.siteCount(); site++) {
+            int employee = -1, cutoffHour = 0;
+            for (int row = delta.siteStart(site); row < delta.siteEnd(site); row++) {
+                if (delta.employee(row) != employee) {
+                    employee = delta.employee(row);
+                    cutoffHour = rules.rule(site, employee).nightShiftCutoffHour();
+                }
+                months.add(YearMonth.from(LocalDate.ofEpochDay(LogicalDay.epochDay(delta.minute(row), cutoffHour))));
+            }
+        }
+        return months;
+    }
+
+    /** Takes the delta's punches whose logical day is in this month and ignores the rest. */
+    synchronized DeltaResult apply(PunchDataset delta, ShiftRuleTable rules) {
+        Map<EmployeeMonth, Set<Integer>> dirtyDays = new LinkedHashMap<>();
+        int added = 0;
+        for (int site = 0; site < delta.siteCount(); site++) {
+            TreeMap<String, EmployeeMonth> employees = null;
+            int employee = -1;
+            ShiftRule rule = null;
+            for (int row = delta.siteStart(site); row < delta.siteEnd(site); row++) {
+                if (delta.employee(row) != employee) {
+                    employee = delta.employee(row);
+                    rule = rules.rule(site, employee);
+                }
+                long day = LogicalDay.epochDay(delta.minute(row), rule.nightShiftCutoffHour()) - monthStart;
+                if (day < 0 || day >= daysInMonth) continue;
+                if (employees == null) employees = sites.computeIfAbsent(delta.siteName(site), s -> new TreeMap<>());
+                String empId = delta.employeeId(employee), name = delta.employeeName(employee);
+                EmployeeMonth state = employees.computeIfAbsent(empId + "::" + name, k -> new EmployeeMonth(empId, name, daysInMonth));
+                state.rule = rule;
+                int dayOfMonth = (int) day + 1;
+                if (state.punches[dayOfMonth] == null) state.punches[dayOfMonth] = new TreeSet<>();
+                if (state.punches[dayOfMonth].add(delta.minute(row))) {
+                    added++;
+                    dirtyDays.computeIfAbsent(state, e -> new HashSet<>()).add(dayOfMonth);
+                }
+            }
+        }
+        int recomputed = 0;
+        for (Map.Entry<EmployeeMonth, Set<Integer>> dirty : dirtyDays.entrySet()) {
+            EmployeeMonth state = dirty.getKey();
+            for (int day : dirty.getValue()) {
+                state.statuses = MusterRollSite.withStatus(state.statuses, day, classify(state.rule, day, state.punches[day]));
+                recomputed++;
+            }
+        }
+        return new DeltaResult(delta.size(), added, recomputed);
+    }
+
+    /** The stored punches are not dataset rows, so the cleaned day carries no employee or row index. */
+    private static int classify(ShiftRule rule, int day, TreeSet<Long> punches) {
+        EmployeeDays.Cleaning cleaning = new EmployeeDays.Cleaning();
+        cleaning.start(rule, punches.first());
+        for (long minute : punches.tailSet(punches.first(), false)) cleaning.add(minute);
+        return MusterRollService.dayStatus(cleaning.finish(-1, day, -1));
+    }
+
+    /** Same shape as {@link MusterRollService}'s full recompute, built from the stored statuses. */
+    synchronized Map<String, MusterRollSite> calculateAllSites() {
+        Map<String, MusterRollSite> allSites = new LinkedHashMap<>();
+        for (Map.Entry<String, TreeMap<String, EmployeeMonth>> site : sites.entrySet()) {
+            MusterRollSite musterRoll = new MusterRollSite(month);
+            for (EmployeeMonth state : site.getValue().values()) musterRoll.add(state.empId, state.name, state.statuses);
+            allSites.put(site.getKey(), musterRoll);
+        }
+        return allSites;
+    }
+}
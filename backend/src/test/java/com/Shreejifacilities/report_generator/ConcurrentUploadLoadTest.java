@@ -0,0 +1,117 @@
+package com.Shreejifacilities.report_generator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fires 50 month-file uploads at once. Every request must be accepted and answered, while no more than the
+ * configured number of uploads are parsed or reports calculated at the same time.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "report.compute.max-concurrent=2")
+class ConcurrentUploadLoadTest {
+
+    private static final int UPLOADS = 50, SITES = 10, EMPLOYEES_PER_SITE = 20;
+    private static final String BOUNDARY = "load-test-boundary";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @Timeout(120)
+    void fiftyConcurrentMonthUploadsAreServedWithinTheComputeBound() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        List<byte[]> bodies = new ArrayList<>();
+        for (int upload = 0; upload < UPLOADS; upload++) bodies.add(multipart(monthFile(upload)));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger peakActive = new AtomicInteger();
+        // A platform thread: a virtual one that never parks would hold a carrier the requests need.
+        Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+            while (running.get()) {
+                peakActive.accumulateAndGet((int) meterRegistry.get("report.compute.active").gauge().value(), Math::max);
+                LockSupport.parkNanos(100_000);
+            }
+        });
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+        try (ExecutorService uploaders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (byte[] body : bodies) {
+                responses.add(uploaders.submit(() -> {
+                    start.await();
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/reports/muster-roll/json"))
+                            .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+                    return client.send(request, HttpResponse.BodyHandlers.ofString());
+                }));
+            }
+            start.countDown();
+            for (Future<HttpResponse<String>> future : responses) {
+                HttpResponse<String> response = future.get();
+                assertEquals(200, response.statusCode(), response.body());
+                assertTrue(response.body().contains("\"reportMonth\""));
+            }
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+        assertTrue(peakActive.get() <= 2, "compute permits in use: " + peakActive.get());
+    }
+
+    /** A month of two punches a day per employee; names carry the upload number so no two files share a hash. */
+    private static byte[] monthFile(int upload) {
+        StringBuilder csv = new StringBuilder("DeviceName,IDNo,Name,PunchTime,Department\n");
+        for (int site = 0; site < SITES; site++) {
+            for (int employee = 0; employee < EMPLOYEES_PER_SITE; employee++) {
+                String id = String.valueOf(10_000 + site * EMPLOYEES_PER_SITE + employee);
+                String name = "Employee " + id + " U" + upload;
+                for (int day = 1; day <= 31; day++) {
+                    int inMinute = (employee * 7 + day) % 40;
+                    csv.append("Site ").append(site).append(',').append(id).append(',').append(name).append(',')
+                            .append(String.format("2024-01-%02d 08:%02d", day, inMinute)).append(",Housekeeping\n");
+                    csv.append("Site ").append(site).append(',').append(id).append(',').append(name).append(',')
+                            .append(String.format("2024-01-%02d %02d:%02d", day, 13 + day % 5, inMinute)).append(",Housekeeping\n");
+                }
+            }
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] multipart(byte[] file) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String fields = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"year\"\r\n\r\n2024\r\n"
+                + "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"month\"\r\n\r\n1\r\n"
+                + "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"punches.csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n";
+        body.writeBytes(fields.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(file);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+}
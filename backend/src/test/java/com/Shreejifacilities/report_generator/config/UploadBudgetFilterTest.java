@@ -0,0 +1,107 @@
+package com.Shreejifacilities.report_generator.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadBudgetFilterTest {
+
+    private final UploadBudgetFilter filter = new UploadBudgetFilter(1000, 1500);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<UploadBudgetFilter.Charge> taken = new ArrayList<>();
+    private int passed;
+
+    UploadBudgetFilterTest() {
+        filter.bindTo(registry);
+    }
+
+    @Test
+    void rejectsUploadsOverTheCeilingWith413() throws Exception {
+        MockHttpServletResponse response = upload(1001, false);
+        assertEquals(413, response.getStatus());
+        assertTrue(response.getContentAsString().contains("exceeds the 1000 byte limit"));
+        assertEquals(0, passed);
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void rejectsUploadsOverTheBudgetWith503UntilAChargeIsReleased() throws Exception {
+        assertEquals(200, upload(800, true).getStatus());
+        assertEquals(800, inFlight());
+        MockHttpServletResponse rejected = upload(800, false);
+        assertEquals(503, rejected.getStatus());
+        assertEquals("30", rejected.getHeader("Retry-After"));
+        assertEquals(200, upload(700, false).getStatus());
+        assertEquals(800, inFlight());
+
+        taken.get(0).close();
+        taken.get(0).close();
+        assertEquals(0, inFlight());
+        assertEquals(200, upload(800, false).getStatus());
+        assertEquals(3, passed);
+    }
+
+    @Test
+    void chargesTheCeilingWithoutAContentLength() throws Exception {
+        assertEquals(200, upload(-1, true).getStatus());
+        assertEquals(1000, inFlight());
+        assertEquals(503, upload(600, false).getStatus());
+    }
+
+    @Test
+    void admitsALoneUploadLargerThanTheBudget() throws Exception {
+        UploadBudgetFilter small = new UploadBudgetFilter(1000, 100);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        small.doFilter(multipart(500), response, (request, res) -> passed++);
+        assertEquals(200, response.getStatus());
+        assertEquals(1, passed);
+    }
+
+    @Test
+    void onlyFiltersMultipartRequests() throws Exception {
+        for (String contentType : new String[] {"application/json", "not a media type", null}) {
+            MockHttpServletRequest request = multipart(5000);
+            request.setContentType(contentType);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, (req, res) -> passed++);
+            assertEquals(200, response.getStatus(), String.valueOf(contentType));
+        }
+        MockHttpServletRequest mixedCase = multipart(5000);
+        mixedCase.setContentType("Multipart/Form-Data; boundary=x");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(mixedCase, response, (req, res) -> passed++);
+        assertEquals(413, response.getStatus());
+        assertEquals(3, passed);
+    }
+
+    /** Sends a multipart request of {@code length} bytes (-1 for none given); {@code keep} takes over its charge like a queued job. */
+    private MockHttpServletResponse upload(int length, boolean keep) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (request, res) -> {
+            passed++;
+            if (keep) taken.add(UploadBudgetFilter.takeCharge((HttpServletRequest) request));
+        };
+        filter.doFilter(multipart(length), response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest multipart(int length) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/reports/jobs");
+        request.setContentType("multipart/form-data; boundary=x");
+        if (length >= 0) request.setContent(new byte[length]);
+        return request;
+    }
+
+    private long inFlight() {
+        return (long) registry.get("report.upload.in.flight").gauge().value();
+    }
+}
@@ -0,0 +1,97 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DelimitedPunchReaderTest {
+
+    private static final String CSV = "\uFEFFDeviceName,IDNo,Name,PunchTime,Department\r\n"
+            + "Site A,101,\"Sharma, Asha\",1/5/24 8:58,Housekeeping\r\n"
+            + "Site A, 102 ,\"Bina \"\"B\"\" Rao\",1/5/24 17:40,\r\n"
+            + "\r\n"
+            + ",103,Chetan,1/5/24 9:00,Security\n"
+            + "Site B,104,Devi,not a time,Security\n"
+            + "Site B,105,Esha\n"
+            + "Site B,106,Farah,2024-01-05T21:15,Security";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tokenizerSplitsQuotedAndEmptyFields() {
+        ByteBuffer in = ByteBuffer.wrap("a,\"b,\"\"c\"\"\",,d\r\nnext".getBytes(StandardCharsets.UTF_8));
+        DelimitedPunchReader.Tokenizer tokenizer = new DelimitedPunchReader.Tokenizer(in, (byte) ',');
+        int next = tokenizer.next(0);
+
+        assertEquals(4, tokenizer.fields);
+        assertEquals("a", tokenizer.text(0, new DelimitedPunchReader.TextCache(), true));
+        assertEquals("b,\"c\"", tokenizer.text(1, new DelimitedPunchReader.TextCache(), true));
+        assertEquals("", tokenizer.text(2, new DelimitedPunchReader.TextCache(), true));
+        assertEquals("d", tokenizer.text(3, new DelimitedPunchReader.TextCache(), true));
+        assertEquals("next", new String(in.array(), next, in.limit() - next, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sniffsTheDelimiterFromTheHeader() {
+        assertEquals('\t', DelimitedPunchReader.sniffDelimiter(ByteBuffer.wrap("DeviceName\tIDNo;x,y\n".getBytes(StandardCharsets.UTF_8)), 0));
+        assertEquals(';', DelimitedPunchReader.sniffDelimiter(ByteBuffer.wrap("DeviceName;IDNo;Name,x\n".getBytes(StandardCharsets.UTF_8)), 0));
+        assertEquals(',', DelimitedPunchReader.sniffDelimiter(ByteBuffer.wrap("DeviceName,IDNo\n".getBytes(StandardCharsets.UTF_8)), 0));
+    }
+
+    @Test
+    void readsRowsAndSkipsIncompleteOnes() throws IOException {
+        Path file = dir.resolve("punches.csv");
+        Files.writeString(file, CSV);
+        PunchChunks chunks = new PunchChunks(rows -> { });
+
+        assertEquals(3, new DelimitedPunchReader(null, 0).read(file, chunks));
+        assertEquals(3, chunks.skippedRows());
+        assertEquals(List.of(
+                "Site A|101|Sharma, Asha|Housekeeping|2024-01-05T08:58",
+                "Site A|102|Bina \"B\" Rao||2024-01-05T17:40",
+                "Site B|106|Farah|Security|2024-01-05T21:15"), rows(chunks.build("csv")));
+    }
+
+    @Test
+    void everyChunkSizeReadsTheSameRows() throws IOException {
+        Path csv = dir.resolve("punches.csv"), tsv = dir.resolve("punches.tsv");
+        Files.writeString(csv, CSV);
+        Files.writeString(tsv, CSV.replace(',', '\t'));
+        for (Path file : List.of(csv, tsv)) {
+            PunchChunks whole = new PunchChunks(rows -> { });
+            new DelimitedPunchReader(null, 0).read(file, whole);
+            List<String> expected = rows(whole.build("whole"));
+            assertEquals(3, expected.size());
+            for (int chunkBytes = 1; chunkBytes <= Files.size(file); chunkBytes++) {
+                PunchChunks chunks = new PunchChunks(rows -> { });
+                assertEquals(3, new DelimitedPunchReader(null, chunkBytes).read(file, chunks), file + " in chunks of " + chunkBytes);
+                assertEquals(expected, rows(chunks.build("chunked")), file + " in chunks of " + chunkBytes);
+                assertEquals(3, chunks.skippedRows(), file + " in chunks of " + chunkBytes);
+            }
+        }
+    }
+
+    private static List<String> rows(PunchDataset dataset) {
+        List<String> rows = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            for (int row = dataset.siteStart(site); row < dataset.siteEnd(site); row++) {
+                int employee = dataset.employee(row);
+                rows.add(String.join("|", dataset.siteName(site), dataset.employeeId(employee), dataset.employeeName(employee),
+                        dataset.department(row), LocalDateTime.ofEpochSecond(dataset.minute(row) * 60, 0, ZoneOffset.UTC).toString()));
+            }
+        }
+        return rows;
+    }
+}
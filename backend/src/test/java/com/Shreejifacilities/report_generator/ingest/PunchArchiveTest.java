@@ -0,0 +1,80 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PunchArchiveTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void mergingAgainCountsArchivedPunchesAsDuplicates() throws IOException {
+        PunchArchive archive = new PunchArchive(root.toString());
+        PunchDataset.Builder first = new PunchDataset.Builder();
+        add(first, "Site A", "101", LocalDateTime.of(2024, 1, 10, 9, 0));
+        add(first, "Site A", "101", LocalDateTime.of(2024, 1, 10, 18, 0));
+        add(first, "Site B", "201", LocalDateTime.of(2024, 1, 10, 9, 5));
+        assertEquals(new PunchArchive.MergeResult(3, 0, 2), archive.merge(first.build("first")));
+
+        PunchDataset.Builder second = new PunchDataset.Builder();
+        add(second, "Site A", "101", LocalDateTime.of(2024, 1, 10, 18, 0));
+        add(second, "Site A", "101", LocalDateTime.of(2024, 1, 9, 9, 0));
+        add(second, "Site B", "201", LocalDateTime.of(2024, 1, 10, 9, 5));
+        assertEquals(new PunchArchive.MergeResult(1, 2, 1), archive.merge(second.build("second")));
+
+        assertEquals(List.of(
+                "Site A 101 2024-01-09T09:00",
+                "Site A 101 2024-01-10T09:00",
+                "Site A 101 2024-01-10T18:00",
+                "Site B 201 2024-01-10T09:05"), punches(archive.load(YearMonth.of(2024, 1), null)));
+        assertEquals(List.of("Site B 201 2024-01-10T09:05"), punches(archive.load(YearMonth.of(2024, 1), "Site B")));
+    }
+
+    @Test
+    void loadReadsOnlyTheFirstDayOfTheFollowingMonth() throws IOException {
+        PunchArchive archive = new PunchArchive(root.toString());
+        PunchDataset.Builder builder = new PunchDataset.Builder();
+        add(builder, "Site A", "101", LocalDateTime.of(2024, 1, 31, 20, 0));
+        add(builder, "Site A", "101", LocalDateTime.of(2024, 2, 1, 4, 0));
+        add(builder, "Site A", "101", LocalDateTime.of(2024, 2, 1, 23, 59));
+        add(builder, "Site A", "101", LocalDateTime.of(2024, 2, 2, 8, 0));
+        add(builder, "Site A", "102", LocalDateTime.of(2024, 2, 3, 8, 0));
+        archive.merge(builder.build("boundary"));
+
+        assertEquals(List.of(
+                "Site A 101 2024-01-31T20:00",
+                "Site A 101 2024-02-01T04:00",
+                "Site A 101 2024-02-01T23:59"), punches(archive.load(YearMonth.of(2024, 1), null)));
+        assertEquals(4, archive.load(YearMonth.of(2024, 2), null).size());
+        assertNull(archive.load(YearMonth.of(2024, 3), null));
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2)),
+                archive.archivedMonths(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2), YearMonth.of(2024, 3)), "Site A"));
+    }
+
+    private static void add(PunchDataset.Builder builder, String site, String empId, LocalDateTime time) {
+        builder.add(site, empId, "Emp " + empId, "Housekeeping", time.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    private static List<String> punches(PunchDataset dataset) {
+        List<String> punches = new ArrayList<>();
+        for (int row = 0; row < dataset.size(); row++) {
+            int site = 0;
+            while (row >= dataset.siteEnd(site)) site++;
+            LocalDateTime time = LocalDateTime.ofEpochSecond(dataset.minute(row) * 60, 0, ZoneOffset.UTC);
+            punches.add(dataset.siteName(site) + " " + dataset.employeeId(dataset.employee(row)) + " " + time);
+        }
+        return punches;
+    }
+}
@@ -0,0 +1,67 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PunchDatasetTest {
+
+    private record Punch(String site, String empId, String name, long minute, String department) {
+        String employeeKey() { return empId + "::" + name; }
+    }
+
+    @Test
+    void sortsBySiteEmployeeAndMinuteKeepingUploadOrderForTies() {
+        // One month of minutes takes a single radix pass; punches decades apart and before 1970 need several.
+        for (long span : new long[] {31 * 1440, 60L * 525_600}) {
+            Random random = new Random(span);
+            List<Punch> punches = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                int employee = random.nextInt(40);
+                long minute = random.nextInt(8) == 0 && !punches.isEmpty()
+                        ? punches.get(random.nextInt(punches.size())).minute
+                        : Math.floorMod(random.nextLong(), span) - span / 2;
+                // The department records upload order, so ties can be told apart.
+                punches.add(new Punch("Site " + (char) ('A' + employee % 3), String.valueOf(100 + employee), "Emp " + employee, minute, "#" + i));
+            }
+            PunchDataset.Builder builder = new PunchDataset.Builder();
+            for (Punch punch : punches) builder.add(punch.site, punch.empId, punch.name, punch.department, punch.minute);
+
+            List<Punch> expected = new ArrayList<>(punches);
+            expected.sort(Comparator.comparing(Punch::site).thenComparing(Punch::employeeKey).thenComparingLong(Punch::minute));
+            assertEquals(expected, rows(builder.build("sorted")), "span " + span);
+        }
+    }
+
+    @Test
+    void mergedChunksSortLikeOneBuilder() {
+        PunchDataset.Builder first = new PunchDataset.Builder(), second = new PunchDataset.Builder(), whole = new PunchDataset.Builder();
+        String[][] rows = {{"Site B", "7", "900"}, {"Site A", "3", "50"}, {"Site B", "7", "100"}, {"Site A", "3", "50"}, {"Site A", "1", "75"}};
+        for (int i = 0; i < rows.length; i++) {
+            PunchDataset.Builder chunk = i < 2 ? first : second;
+            chunk.add(rows[i][0], rows[i][1], "Emp " + rows[i][1], "#" + i, Long.parseLong(rows[i][2]));
+            whole.add(rows[i][0], rows[i][1], "Emp " + rows[i][1], "#" + i, Long.parseLong(rows[i][2]));
+        }
+        first.addAll(second);
+        List<Punch> merged = rows(first.build("merged"));
+        assertEquals(rows(whole.build("whole")), merged);
+        assertEquals(List.of("#4", "#1", "#3", "#2", "#0"), merged.stream().map(Punch::department).toList());
+    }
+
+    private static List<Punch> rows(PunchDataset dataset) {
+        List<Punch> rows = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            for (int row = dataset.siteStart(site); row < dataset.siteEnd(site); row++) {
+                int employee = dataset.employee(row);
+                rows.add(new Punch(dataset.siteName(site), dataset.employeeId(employee), dataset.employeeName(employee),
+                        dataset.minute(row), dataset.department(row)));
+            }
+        }
+        return rows;
+    }
+}
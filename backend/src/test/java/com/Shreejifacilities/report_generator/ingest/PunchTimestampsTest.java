@@ -0,0 +1,75 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PunchTimestampsTest {
+
+    @Test
+    void parsesEachLayout() {
+        LocalDateTime expected = LocalDateTime.of(2024, 1, 25, 8, 5);
+        assertEquals(minute(expected), parse("1/25/24 8:05"));
+        assertEquals(minute(expected), parse("25/01/24 08:05"));
+        assertEquals(minute(expected), parse("2024-01-25 08:05"));
+        assertEquals(minute(expected), parse("2024-01-25T08:05:59"));
+        assertEquals(minute(expected), parse("  1/25/2024 8:05 AM"));
+        assertEquals(minute(LocalDateTime.of(2024, 2, 29, 23, 59)), parse("2/29/24 23:59"));
+    }
+
+    @Test
+    void rejectsWhatIsNotAPunchTime() {
+        for (String text : new String[] {"", "1/25/24", "1/25/24 24:00", "1/25/24 8:60", "2/30/24 8:00", "13/13/24 8:00",
+                "2023-02-29 8:00", "1-25-24 8:00", "1/25/124 8:00", "2024/01/25 8:00", "Punch 1/25/24 8:00"}) {
+            assertEquals(PunchTimestamps.NO_PUNCH, parse(text), text);
+        }
+    }
+
+    @Test
+    void twoDigitYearsFallInTheHundredYearsStartingEightyYearsBack() {
+        int start = Year.now().getValue() - 80;
+        assertEquals(minute(LocalDateTime.of(start, 3, 1, 9, 0)), parse(String.format("3/1/%02d 9:00", start % 100)));
+        assertEquals(minute(LocalDateTime.of(start + 99, 3, 1, 9, 0)), parse(String.format("3/1/%02d 9:00", (start + 99) % 100)));
+        assertEquals(minute(LocalDateTime.of(1999, 3, 1, 9, 0)), parse("3/1/1999 9:00"));
+    }
+
+    @Test
+    void slashedDatesAreMonthFirstWhenValidAndCountedForTheDateOrderWarning() {
+        PunchTimestamps.Orders orders = new PunchTimestamps.Orders();
+        assertEquals(minute(LocalDateTime.of(2024, 3, 4, 9, 0)), PunchTimestamps.parse("3/4/24 9:00".toCharArray(), 0, 11, orders));
+        assertEquals(minute(LocalDateTime.of(2024, 3, 13, 9, 0)), PunchTimestamps.parse("3/13/24 9:00".toCharArray(), 0, 12, orders));
+        assertEquals(minute(LocalDateTime.of(2024, 3, 3, 9, 0)), PunchTimestamps.parse("3/3/24 9:00".toCharArray(), 0, 11, orders));
+        assertEquals(minute(LocalDateTime.of(2024, 3, 4, 9, 0)), PunchTimestamps.parse("2024-03-04 9:00".toCharArray(), 0, 15, orders));
+        assertEquals(new PunchDataset.DateOrder(1, 0, 1), dateOrder(orders));
+        assertFalse(dateOrder(orders).suspicious());
+
+        assertEquals(minute(LocalDateTime.of(2024, 3, 13, 9, 0)), PunchTimestamps.parse("13/03/24 9:00".toCharArray(), 0, 13, orders));
+        PunchDataset.DateOrder dateOrder = dateOrder(orders);
+        assertEquals(new PunchDataset.DateOrder(1, 1, 1), dateOrder);
+        assertTrue(dateOrder.suspicious());
+        assertEquals("1 punch dates can only be day-first, but 2 others were read month-first; check the export's date format.", dateOrder.warning());
+    }
+
+    private static long parse(String text) {
+        return PunchTimestamps.parse(text.toCharArray(), 0, text.length(), new PunchTimestamps.Orders());
+    }
+
+    private static long minute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    /** The counts as the dataset reports them once every chunk is merged. */
+    private static PunchDataset.DateOrder dateOrder(PunchTimestamps.Orders orders) {
+        PunchChunks chunks = new PunchChunks(rows -> { });
+        PunchChunks.Chunk chunk = chunks.chunk();
+        chunk.orders.add(orders);
+        chunk.onPunch("Site A", "101", "Asha", "", 0);
+        return chunks.build("orders").dateOrder();
+    }
+}
@@ -0,0 +1,134 @@
+package com.Shreejifacilities.report_generator.ingest;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingPunchReaderTest {
+
+    private static final String[] HEADER = {"DeviceName", "IDNo", "Name", "PunchTime", "Department"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsNumericTextAndBlankCellsAndSkipsIncompleteRows() throws Exception {
+        Path file = dir.resolve("punches.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("m/d/yy h:mm"));
+            CellStyle centered = workbook.createCellStyle();
+            centered.setAlignment(HorizontalAlignment.CENTER);
+            Sheet sheet = workbook.createSheet("Punches");
+            header(sheet);
+            Row serial = sheet.createRow(1);
+            serial.createCell(0).setCellValue("Site A");
+            serial.createCell(1).setCellValue(101);
+            serial.createCell(2).setCellValue("Asha");
+            Cell punch = serial.createCell(3);
+            punch.setCellValue(DateUtil.getExcelDate(LocalDateTime.of(2024, 1, 5, 8, 58)));
+            punch.setCellStyle(dateStyle);
+            serial.createCell(4).setCellValue("Housekeeping");
+            text(sheet.createRow(2), "Site A", "102", "Bina", "1/5/24 17:40");
+            // An IDNo cell that is styled but holds no value is read as an empty ID, as the workbook readers always did.
+            Row blankId = text(sheet.createRow(3), "Site A", null, "Unknown", "1/5/24 9:00");
+            blankId.createCell(1).setCellStyle(centered);
+            text(sheet.createRow(4), "Site A", "103", "Chetan", "not a time");
+            text(sheet.createRow(5), "", "104", "Devi", "1/5/24 9:00");
+            write(workbook, file);
+        }
+
+        PunchChunks chunks = new PunchChunks(rows -> { });
+        assertEquals(3, new StreamingPunchReader(null).read(file, chunks));
+        assertEquals(2, chunks.skippedRows());
+        assertEquals(List.of(
+                "Site A|101|Asha|Housekeeping|2024-01-05T08:58",
+                "Site A|102|Bina||2024-01-05T17:40",
+                "Site A||Unknown||2024-01-05T09:00"), rows(chunks.build("test")));
+    }
+
+    @Test
+    void readsContinuationSheetsAndIgnoresOtherSheets() throws Exception {
+        Path file = dir.resolve("continued.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet first = workbook.createSheet("Punches");
+            header(first);
+            text(first.createRow(1), "Site A", "101", "Asha", "1/5/24 8:58");
+            Sheet second = workbook.createSheet("Punches (2)");
+            header(second);
+            text(second.createRow(1), "Site A", "101", "Asha", "1/5/24 17:40");
+            Sheet notes = workbook.createSheet("Notes");
+            notes.createRow(0).createCell(0).setCellValue("Exported from the device");
+            notes.createRow(1).createCell(0).setCellValue("1/5/24 9:00");
+            write(workbook, file);
+        }
+
+        PunchChunks chunks = new PunchChunks(rows -> { });
+        assertEquals(2, new StreamingPunchReader(null).read(file, chunks));
+        assertEquals(List.of(
+                "Site A|101|Asha||2024-01-05T08:58",
+                "Site A|101|Asha||2024-01-05T17:40"), rows(chunks.build("test")));
+    }
+
+    @Test
+    void rejectsAFirstSheetWithoutThePunchColumns() throws Exception {
+        Path file = dir.resolve("other.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Row header = workbook.createSheet("Staff").createRow(0);
+            header.createCell(0).setCellValue("DeviceName");
+            header.createCell(1).setCellValue("IDNo");
+            write(workbook, file);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new StreamingPunchReader(null).read(file, new PunchChunks(rows -> { })));
+    }
+
+    private static void header(Sheet sheet) {
+        Row row = sheet.createRow(0);
+        for (int i = 0; i < HEADER.length; i++) row.createCell(i).setCellValue(HEADER[i]);
+    }
+
+    private static Row text(Row row, String site, String empId, String name, String punchTime) {
+        row.createCell(0).setCellValue(site);
+        if (empId != null) row.createCell(1).setCellValue(empId);
+        row.createCell(2).setCellValue(name);
+        row.createCell(3).setCellValue(punchTime);
+        return row;
+    }
+
+    private static void write(XSSFWorkbook workbook, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            workbook.write(out);
+        }
+    }
+
+    private static List<String> rows(PunchDataset dataset) {
+        List<String> rows = new ArrayList<>();
+        for (int site = 0; site < dataset.siteCount(); site++) {
+            for (int row = dataset.siteStart(site); row < dataset.siteEnd(site); row++) {
+                int employee = dataset.employee(row);
+                rows.add(String.join("|", dataset.siteName(site), dataset.employeeId(employee), dataset.employeeName(employee),
+                        dataset.department(row), LocalDateTime.ofEpochSecond(dataset.minute(row) * 60, 0, ZoneOffset.UTC).toString()));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,103 @@
+package com.Shreejifacilities.report_generator.rules;
+
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ShiftRuleRegistryTest {
+
+    private static final String RULES = """
+            {
+              "defaults": { "nightShiftCutoffHour": 4, "duplicateWindowMinutes": 30, "fullShiftHours": 8,
+                            "halfShiftMinHours": 5, "overtimeThresholdHours": 9 },
+              "sites": [
+                { "site": "karol bagh ", "fullShiftHours": 9,
+                  "employees": [ { "ids": ["88023"], "nightShiftCutoffHour": 16 } ] }
+              ]
+            }""";
+
+    private static final PunchDataset DATASET = dataset();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void employeeOverridesInheritFromTheirSiteAndTheDefaults() throws IOException {
+        Path file = dir.resolve("rules.json");
+        Files.writeString(file, RULES);
+        ShiftRuleTable table = new ShiftRuleRegistry(file.toString()).compile(DATASET);
+
+        assertEquals(new ShiftRule(4, 30, 8, 5, 9), rule(table, "Site A", "101"));
+        assertEquals(new ShiftRule(4, 30, 9, 5, 9), rule(table, "Karol Bagh", "88024"));
+        assertEquals(new ShiftRule(16, 30, 9, 5, 9), rule(table, "Karol Bagh", "88023"));
+    }
+
+    @Test
+    void reloadsAnEditedFileAndKeepsTheRulesWhenAnEditIsInvalid() throws IOException {
+        Path file = dir.resolve("rules.json");
+        Files.writeString(file, RULES);
+        ShiftRuleRegistry registry = new ShiftRuleRegistry(file.toString());
+        assertEquals(1, registry.version());
+
+        edit(file, RULES.replace("\"nightShiftCutoffHour\": 16", "\"nightShiftCutoffHour\": 14"), 1);
+        assertEquals(14, rule(registry.compile(DATASET), "Karol Bagh", "88023").nightShiftCutoffHour());
+        assertEquals(2, registry.version());
+
+        edit(file, RULES.replace("karol bagh", ""), 2);
+        assertEquals(14, rule(registry.compile(DATASET), "Karol Bagh", "88023").nightShiftCutoffHour());
+        assertEquals(2, registry.version());
+        assertNotNull(registry.describe().get("lastError"));
+
+        edit(file, RULES, 3);
+        assertEquals(16, rule(registry.compile(DATASET), "Karol Bagh", "88023").nightShiftCutoffHour());
+        assertEquals(3, registry.version());
+        assertNull(registry.describe().get("lastError"));
+    }
+
+    @Test
+    void fallsBackToTheBundledRulesWithoutAFile() throws IOException {
+        Path file = dir.resolve("rules.json");
+        ShiftRuleRegistry registry = new ShiftRuleRegistry(file.toString());
+        assertEquals("classpath:shift-rules.json", registry.describe().get("source"));
+        assertEquals(16, rule(registry.compile(DATASET), "Karol Bagh", "88023").nightShiftCutoffHour());
+        assertEquals(4, rule(registry.compile(DATASET), "Karol Bagh", "88024").nightShiftCutoffHour());
+
+        edit(file, RULES.replace("\"nightShiftCutoffHour\": 16", "\"nightShiftCutoffHour\": 14"), 1);
+        assertEquals(14, rule(registry.compile(DATASET), "Karol Bagh", "88023").nightShiftCutoffHour());
+        Files.delete(file);
+        assertEquals(16, rule(registry.compile(DATASET), "Karol Bagh", "88023").nightShiftCutoffHour());
+        assertEquals("classpath:shift-rules.json", registry.describe().get("source"));
+    }
+
+    /** Rewrites the file with a distinct modification time, since edits within one clock tick look unchanged. */
+    private static void edit(Path file, String content, int edit) throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2024-01-01T00:00:00Z").plusSeconds(edit)));
+    }
+
+    private static ShiftRule rule(ShiftRuleTable table, String siteName, String empId) {
+        int site = 0;
+        while (!DATASET.siteName(site).equals(siteName)) site++;
+        int employee = 0;
+        while (!DATASET.employeeId(employee).equals(empId)) employee++;
+        return table.rule(site, employee);
+    }
+
+    private static PunchDataset dataset() {
+        PunchDataset.Builder builder = new PunchDataset.Builder();
+        builder.add("Site A", "101", "Asha", "Housekeeping", 0);
+        builder.add("Karol Bagh", "88023", "Bina", "Housekeeping", 0);
+        builder.add("Karol Bagh", "88024", "Chetan", "Housekeeping", 0);
+        return builder.build("rules");
+    }
+}
@@ -0,0 +1,73 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DailyWorkServiceTest {
+
+    @Test
+    void classifiesEachDayByTheShiftRules() throws IOException {
+        PunchDataset.Builder builder = new PunchDataset.Builder();
+        LocalDateTime day = LocalDateTime.of(2024, 1, 10, 0, 0);
+        punches(builder, "Site A", "101", day.withHour(9), day.withHour(17).withMinute(30));
+        punches(builder, "Site A", "102", day.withHour(8), day.withHour(18).withMinute(30));
+        punches(builder, "Site A", "103", day.withHour(9), day.withHour(15));
+        punches(builder, "Site A", "104", day.withHour(9), day.withHour(12));
+        // The second punch is inside the 30 minute duplicate window, so only one is kept.
+        punches(builder, "Site A", "105", day.withHour(9), day.withHour(9).withMinute(20));
+        // A Karol Bagh night employee's day runs to the 16:00 cutoff, so the morning punch-out closes the 10th.
+        punches(builder, "Karol Bagh", "88023", day.withHour(18), day.plusDays(1).withHour(10).withMinute(15));
+
+        JsonNode sites = json(service().generateJsonReport(builder.build("duty"), 2024, 1, false, ReportProgress.NONE)).get("sites");
+
+        Map<String, JsonNode> entries = new LinkedHashMap<>();
+        Map<String, String> statuses = new LinkedHashMap<>(), overtime = new LinkedHashMap<>();
+        for (JsonNode site : sites) {
+            for (JsonNode entry : site.get("dailyEntries")) {
+                assertEquals("2024-01-10", entry.get("date").asText());
+                entries.put(entry.get("idNo").asText(), entry);
+                statuses.put(entry.get("idNo").asText(), entry.get("dutyStatus").asText());
+                overtime.put(entry.get("idNo").asText(), entry.get("otHours").asText());
+            }
+        }
+        assertEquals(Map.of("101", "1", "102", "1", "103", "Half Duty", "104", "No Duty", "105", "Missing Punch", "88023", "1"), statuses);
+        assertEquals(Map.of("101", "0.00", "102", "1.50", "103", "0.00", "104", "0.00", "105", "0.00", "88023", "7.25"), overtime);
+
+        JsonNode siteA = sites.get("Site A");
+        assertEquals(2.5, siteA.get("grandTotals").get("duty").asDouble());
+        assertEquals("1.50", siteA.get("grandTotals").get("overtime").asText());
+        assertEquals("", entries.get("105").get("punchOut").asText());
+        assertEquals("0.00", entries.get("105").get("duration").asText());
+        assertEquals("11/01/24 10:15", entries.get("88023").get("punchOut").asText());
+        assertEquals("16.25", entries.get("88023").get("duration").asText());
+    }
+
+    private static void punches(PunchDataset.Builder builder, String site, String empId, LocalDateTime... times) {
+        for (LocalDateTime time : times) builder.add(site, empId, "Emp " + empId, "Housekeeping", time.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    private static DailyWorkService service() {
+        DailyWorkService service = new DailyWorkService();
+        ReflectionTestUtils.setField(service, "shiftRuleRegistry", new ShiftRuleRegistry(""));
+        return service;
+    }
+
+    private static JsonNode json(ReportWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+}
@@ -0,0 +1,88 @@
+package com.Shreejifacilities.report_generator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReportResultCacheTest {
+
+    private static final int BLOCK = 8 << 10;
+
+    private final AtomicInteger rendered = new AtomicInteger();
+
+    @Test
+    void evictsTheLeastRecentlyUsedOnceOverBudget() throws Exception {
+        ReportResultCache cache = new ReportResultCache(3 * BLOCK, Duration.ofMinutes(30));
+        byte[] a = report(5000, 'a'), b = report(5000, 'b'), c = report(5000, 'c');
+        fetch(cache, "a", a);
+        fetch(cache, "b", b);
+        fetch(cache, "c", c);
+        fetch(cache, "a", a);
+        fetch(cache, "d", report(5000, 'd'));
+
+        assertEquals(4, rendered.get());
+        assertEquals(3, cache.stats().get("entries"));
+        assertEquals(1L, cache.stats().get("evictions"));
+        fetch(cache, "a", a);
+        fetch(cache, "c", c);
+        assertEquals(4, rendered.get());
+        fetch(cache, "b", b);
+        assertEquals(5, rendered.get());
+    }
+
+    @Test
+    void chargesWholeBlocksAndSkipsReportsLargerThanTheBudget() throws Exception {
+        ReportResultCache cache = new ReportResultCache(2 * BLOCK, Duration.ofMinutes(30));
+        fetch(cache, "small", report(1, 's'));
+        assertEquals((long) BLOCK, cache.stats().get("bytes"));
+        fetch(cache, "two-blocks", report(BLOCK + 1, 't'));
+        assertEquals(1, cache.stats().get("entries"));
+        assertEquals((long) 2 * BLOCK, cache.stats().get("bytes"));
+
+        byte[] large = report(2 * BLOCK + 1, 'l');
+        assertArrayEquals(large, fetch(cache, "large", large));
+        assertArrayEquals(large, fetch(cache, "large", large));
+        assertEquals(4, rendered.get());
+        assertEquals((long) 2 * BLOCK, cache.stats().get("bytes"));
+    }
+
+    @Test
+    void dropsExpiredEntriesOnLookupAndWhenStoring() throws Exception {
+        ReportResultCache cache = new ReportResultCache(16 * BLOCK, Duration.ofMillis(50));
+        byte[] a = report(100, 'a'), b = report(100, 'b');
+        fetch(cache, "a", a);
+        fetch(cache, "b", b);
+        Thread.sleep(100);
+        fetch(cache, "c", report(100, 'c'));
+        assertEquals(1, cache.stats().get("entries"));
+        assertEquals(2L, cache.stats().get("evictions"));
+
+        Thread.sleep(100);
+        assertArrayEquals(report(100, 'c'), fetch(cache, "c", report(100, 'c')));
+        assertEquals(4, rendered.get());
+    }
+
+    private static byte[] report(int length, char fill) {
+        byte[] content = new byte[length];
+        Arrays.fill(content, (byte) fill);
+        return content;
+    }
+
+    /** Goes through the cache like the dispatcher does, rendering {@code content} on a miss. */
+    private byte[] fetch(ReportResultCache cache, String key, byte[] content) throws Exception {
+        ReportWriter writer = cache.get(key, () -> outputStream -> {
+            rendered.incrementAndGet();
+            outputStream.write(content);
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        assertArrayEquals(content, out.toByteArray());
+        return out.toByteArray();
+    }
+}
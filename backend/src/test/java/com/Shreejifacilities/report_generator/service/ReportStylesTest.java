@@ -0,0 +1,66 @@
+package com.Shreejifacilities.report_generator.service;
+
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReportStylesTest {
+
+    @Test
+    void musterRollStyleCountDoesNotGrowWithSites() {
+        MusterRollService service = new MusterRollService();
+        MusterRollSite site = new MusterRollSite(YearMonth.of(2024, 1));
+        site.add("1", "A", monthOfStatuses());
+        assertSameCounts((workbook, styles) -> service.generateMusterRollSheet(workbook, styles, "Site " + workbook.getNumberOfSheets(), site, 2024, 0));
+    }
+
+    @Test
+    void attendanceStyleCountDoesNotGrowWithShiftSheets() {
+        AttendanceSummaryService service = new AttendanceSummaryService();
+        Map<String, Object> shift = Map.of("sites", Collections.emptyMap(), "summaries", Collections.emptyMap());
+        assertSameCounts((workbook, styles) -> service.generateReportSheet(workbook, styles, "Summary " + workbook.getNumberOfSheets(), "January 2024", 8.0, shift));
+    }
+
+    @Test
+    void dailyWorkStyleCountDoesNotGrowWithSites() {
+        DailyWorkService service = new DailyWorkService();
+        Map<String, Object> site = Map.of("dailyEntries", List.of(), "dutySummary", List.of(), "overtimeSummary", List.of(),
+                "grandTotals", Map.of("duty", 0.0, "overtime", "0.00"));
+        assertSameCounts((workbook, styles) -> service.generateSheetFromData(workbook, styles, "Site " + workbook.getNumberOfSheets(), site));
+    }
+
+    private static void assertSameCounts(BiConsumer<SXSSFWorkbook, ReportStyles> sheet) {
+        int[] one = counts(sheet, 1), many = counts(sheet, 40);
+        assertEquals(one[0], many[0], "cell styles");
+        assertEquals(one[1], many[1], "fonts");
+    }
+
+    private static int[] counts(BiConsumer<SXSSFWorkbook, ReportStyles> sheet, int sheets) {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook()) {
+            try {
+                ReportStyles styles = new ReportStyles(workbook);
+                for (int i = 0; i < sheets; i++) sheet.accept(workbook, styles);
+                return new int[]{workbook.getNumCellStyles(), workbook.getNumberOfFonts()};
+            } finally {
+                // The workbook is never written, so its temp sheets are dropped before close() tries to flush them.
+                workbook.dispose();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Cycles A, P, H and M; the absent Sundays of January 2024 render as WO. */
+    private static long monthOfStatuses() {
+        long row = 0;
+        for (int day = 1; day <= 31; day++) row = MusterRollSite.withStatus(row, day, day % 4);
+        return row;
+    }
+}
@@ -0,0 +1,72 @@
+package com.Shreejifacilities.report_generator.service;
+
+import com.Shreejifacilities.report_generator.ingest.PunchDataset;
+import com.Shreejifacilities.report_generator.rules.ShiftRuleRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class RunningMusterRollTest {
+
+    private record Punch(String site, String empId, String name, LocalDateTime time) { }
+
+    @Test
+    void dailyDeltasAcrossAMonthBoundaryMatchTheFullRecompute() throws IOException {
+        List<Punch> punches = new ArrayList<>();
+        for (LocalDate day = LocalDate.of(2024, 1, 25); day.isBefore(LocalDate.of(2024, 2, 6)); day = day.plusDays(1)) {
+            // Day shift, a night shift ending before the default 04:00 cutoff, and a Karol Bagh employee whose
+            // cutoff is 16:00, so their morning punch-out still belongs to the previous day.
+            punches.add(new Punch("Site A", "101", "Day Worker", day.atTime(8, 55)));
+            punches.add(new Punch("Site A", "101", "Day Worker", day.atTime(17, 40)));
+            punches.add(new Punch("Site A", "102", "Night Worker", day.atTime(20, 5)));
+            punches.add(new Punch("Site A", "102", "Night Worker", day.plusDays(1).atTime(3, 30)));
+            punches.add(new Punch("Karol Bagh", "88023", "Late Worker", day.atTime(18, 0)));
+            punches.add(new Punch("Karol Bagh", "88023", "Late Worker", day.plusDays(1).atTime(10, 15)));
+        }
+
+        MusterRollService service = service();
+        for (LocalDate day = LocalDate.of(2024, 1, 25); day.isBefore(LocalDate.of(2024, 2, 7)); day = day.plusDays(1)) {
+            LocalDate calendarDay = day;
+            PunchDataset delta = dataset("delta-" + day, punches.stream().filter(p -> p.time.toLocalDate().equals(calendarDay)).toList());
+            service.applyDelta(delta, day.getYear(), day.getMonthValue());
+            if (day.getDayOfMonth() == 1) service.applyDelta(delta, day.getYear(), day.getMonthValue());
+        }
+
+        PunchDataset full = dataset("full", punches);
+        for (int month = 1; month <= 2; month++) {
+            ReportWriter running = service.generateRunningJsonReport(2024, month, false);
+            assertNotNull(running, "running roll for month " + month);
+            assertEquals(json(service.generateJsonReport(full, 2024, month, false, ReportProgress.NONE)), json(running), "month " + month);
+        }
+    }
+
+    private static MusterRollService service() {
+        MusterRollService service = new MusterRollService();
+        ReflectionTestUtils.setField(service, "shiftRuleRegistry", new ShiftRuleRegistry(""));
+        return service;
+    }
+
+    private static PunchDataset dataset(String id, List<Punch> punches) {
+        PunchDataset.Builder builder = new PunchDataset.Builder();
+        for (Punch punch : punches) {
+            builder.add(punch.site, punch.empId, punch.name, "Housekeeping", punch.time.toEpochSecond(ZoneOffset.UTC) / 60);
+        }
+        return builder.build(id);
+    }
+
+    private static String json(ReportWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return out.toString();
+    }
+}